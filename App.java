@@ -1,4 +1,9 @@
+import java.util.List;
+import java.util.Random;
 import java.awt.EventQueue;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
 /**
  * App class.
@@ -13,16 +18,303 @@ public class App {
      * @throws Exception
      */
     public static void main(String[] args) throws Exception {
+        Options options = new Options(args);
+        List<String> files = options.getFiles();
+
         // Make sure a filename was provided.
-        if (args.length == 0) {
+        if (files.isEmpty()) {
             Console.out("Please specify a source file.");
             return;
         }
 
+        // Report the time spent in each stage when the program exits.
+        if (options.has("--metrics") || options.get("--metrics-output", null) != null) {
+            boolean print = options.has("--metrics");
+            String output = options.get("--metrics-output", null);
+
+            Metrics.setEnabled(true);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> reportMetrics(print, output)));
+        }
+
+        // Convert a text matrix file into the binary or tiled grid format.
+        if (options.has("--convert")) {
+            boolean tiled = options.has("--tiled");
+            String extension = tiled ? ".tiles" : ".elev";
+
+            convert(files.get(0), files.size() > 1 ? files.get(1) : convertedName(files.get(0), extension), tiled);
+            return;
+        }
+
         // Check for command-line flags.
-        boolean flag = args.length > 1 && args[1].equals("--disable-middle-priority");
+        boolean flag = options.has("--disable-middle-priority");
+        boolean optimal = options.has("--optimal");
+        boolean heat = options.has("--heat");
+        String threads = options.get("--threads", null);
+        long seed;
+
+        // Set the number of worker threads.
+        try {
+            if (threads != null) {
+                Parallel.setParallelism(Integer.parseInt(threads));
+            }
+        } catch (IllegalArgumentException e) {
+            Console.out("The number of threads must be a positive integer.");
+            return;
+        }
+
+        // Set the memory budget for the tiles of tiled grids.
+        try {
+            String memory = options.get("--memory", null);
+
+            if (memory != null) {
+                TiledGrid.setBudget(Long.parseLong(memory) << 20);
+            }
+        } catch (IllegalArgumentException e) {
+            Console.out("The memory budget must be a positive number of megabytes.");
+            return;
+        }
+
+        // Set the spacing of the cells for the slope and hillshade layers.
+        try {
+            String size = options.get("--cell-size", null);
+
+            if (size != null) {
+                Stencil.setCellSize(Double.parseDouble(size));
+            }
+        } catch (IllegalArgumentException e) {
+            Console.out("The cell size must be a positive number.");
+            return;
+        }
+
+        // Pick the layer the map is drawn from.
+        int layer;
+
+        try {
+            layer = Stencil.parseLayer(options.get("--layer", "elevation"));
+        } catch (IllegalArgumentException e) {
+            Console.out(e.getMessage());
+            return;
+        }
+
+        // Pick the random seed for the paths.
+        try {
+            seed = Long.parseLong(options.get("--seed", String.valueOf(new Random().nextLong())));
+        } catch (NumberFormatException e) {
+            Console.out("The seed must be an integer.");
+            return;
+        }
+
+        // Pick the endpoints of the point-to-point route, if any.
+        int[] trail;
+
+        try {
+            trail = parseTrail(options);
+        } catch (IllegalArgumentException e) {
+            Console.out("Route endpoints must be given as <row>,<col>.");
+            return;
+        }
+
+        // Answer queries about the files over HTTP until stopped.
+        if (options.has("--serve")) {
+            int port;
+            long budget;
+
+            try {
+                port = Integer.parseInt(options.get("--port", "8080"));
+
+                if (port < 0 || port > 65535) {
+                    throw new NumberFormatException();
+                }
+            } catch (NumberFormatException e) {
+                Console.out("The port must be an integer from 0 to 65535.");
+                return;
+            }
+
+            try {
+                budget = Long.parseLong(options.get("--cache", "1024")) << 20;
+
+                if (budget <= 0) {
+                    throw new NumberFormatException();
+                }
+            } catch (NumberFormatException e) {
+                Console.out("The cache budget must be a positive number of megabytes.");
+                return;
+            }
+
+            System.setProperty("java.awt.headless", "true");
+
+            try {
+                new Server(files, flag, optimal, seed, budget).start(port);
+            } catch (IllegalArgumentException e) {
+                Console.out(e.getMessage());
+            } catch (IOException e) {
+                Console.out(String.format("Unable to listen on port %d.", port));
+            }
+
+            return;
+        }
+
+        // Process every grid file in the given directories or patterns.
+        if (options.has("--batch")) {
+            int jobs;
+            int budget;
+
+            try {
+                jobs = Integer.parseInt(options.get("--jobs", String.valueOf(Parallel.getParallelism())));
+
+                if (jobs < 1) {
+                    throw new NumberFormatException();
+                }
+            } catch (NumberFormatException e) {
+                Console.out("The number of jobs must be a positive integer.");
+                return;
+            }
+
+            try {
+                budget = Integer.parseInt(options.get("--resident", "1024"));
+
+                if (budget < 1) {
+                    throw new NumberFormatException();
+                }
+            } catch (NumberFormatException e) {
+                Console.out("The resident memory budget must be a positive number of megabytes.");
+                return;
+            }
+
+            System.setProperty("java.awt.headless", "true");
+            Batch.run(files, flag, optimal, seed, trail, options.get("--format", "json"), jobs, budget);
+            return;
+        }
+
+        // Run many trials of the paths with seeds drawn from the given seed.
+        if (options.get("--ensemble", null) != null) {
+            int trials;
+
+            try {
+                trials = Integer.parseInt(options.get("--ensemble", null));
+            } catch (NumberFormatException e) {
+                Console.out("The number of trials must be a positive integer.");
+                return;
+            }
+
+            System.setProperty("java.awt.headless", "true");
+            Ensemble.run(files, flag, seed, trials, options.get("--format", "text"));
+            return;
+        }
+
+        // Process the files without a window.
+        if (options.has("--headless")) {
+            System.setProperty("java.awt.headless", "true");
+            Headless.run(files, flag, optimal, seed, trail, heat, layer, options.get("--format", "png"),
+                    options.get("--output", null));
+            return;
+        }
 
         // Queue the Render.
-        EventQueue.invokeLater(() -> new Render(args[0], flag));
+        EventQueue.invokeLater(() -> new Render(files.get(0), flag, optimal, seed, trail, heat, layer));
+    }
+
+    /**
+     * Parse the endpoints of the point-to-point route as { fromRow, fromCol,
+     * toRow, toCol }, or null if no route was asked for. A missing start or
+     * finish is left as -1, -1, for the lowest or highest point.
+     *
+     * @param options
+     * @return int[]
+     */
+    private static int[] parseTrail(Options options) {
+        if (!options.has("--route") && options.get("--from", null) == null && options.get("--to", null) == null) {
+            return null;
+        }
+
+        int[] from = parseCell(options.get("--from", "-1,-1"));
+        int[] to = parseCell(options.get("--to", "-1,-1"));
+
+        return new int[] { from[0], from[1], to[0], to[1] };
+    }
+
+    /**
+     * Parse a cell given as "row,col", where -1,-1 stands for the default.
+     *
+     * @param value
+     * @return int[]
+     */
+    private static int[] parseCell(String value) {
+        String[] parts = value.split(",");
+
+        if (parts.length != 2) {
+            throw new IllegalArgumentException();
+        }
+
+        int[] cell = { Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()) };
+
+        if ((cell[0] < 0 || cell[1] < 0) && !(cell[0] == -1 && cell[1] == -1)) {
+            throw new IllegalArgumentException();
+        }
+
+        return cell;
+    }
+
+    /**
+     * Convert a text matrix file into the binary or tiled grid format.
+     *
+     * @param source
+     * @param target
+     * @param tiled
+     * @return void
+     */
+    private static void convert(String source, String target, boolean tiled) {
+        Stage stage = Metrics.start("convert");
+
+        try {
+            if (tiled) {
+                TiledGrid.convert(source, target, TiledGrid.DEFAULT_TILE_SIZE);
+                Console.out(String.format("Wrote tiled grid: %s", target));
+            } else {
+                BinaryGrid.convert(source, target);
+                Console.out(String.format("Wrote binary grid: %s", target));
+            }
+        } catch (IOException e) {
+            Console.out(String.format("There was a problem writing the file: %s", target));
+        } catch (IllegalArgumentException e) {
+            Console.out(e.getMessage());
+        } finally {
+            stage.close();
+        }
+    }
+
+    /**
+     * Print the metrics of every stage, and write them as JSON to a given file
+     * unless it is null.
+     *
+     * @param print
+     * @param output
+     * @return void
+     */
+    private static void reportMetrics(boolean print, String output) {
+        if (print) {
+            Console.out(Metrics.summarize());
+        }
+
+        if (output != null) {
+            try {
+                Files.write(Paths.get(output), List.of(Metrics.dump()));
+            } catch (IOException e) {
+                Console.out(String.format("There was a problem writing the file: %s", output));
+            }
+        }
+    }
+
+    /**
+     * Build the default converted filename for a given text matrix file.
+     *
+     * @param file
+     * @param extension
+     * @return String
+     */
+    private static String convertedName(String file, String extension) {
+        int dot = file.lastIndexOf(".");
+
+        return (dot > file.lastIndexOf("/") ? file.substring(0, dot) : file) + extension;
     }
 }
@@ -0,0 +1,92 @@
+/**
+ * BandWalker class.
+ *
+ * Walks every greedy path at once, one band of columns at a time. All paths
+ * cross a band before any of them starts on the next one, so only the tiles
+ * of a single column of tiles are needed at any time, which lets grids kept
+ * on disk be walked within their memory budget. Each path keeps its own
+ * random stream from band to band, so the results are the same as those of
+ * the plain walker.
+ */
+public class BandWalker extends Walker {
+
+    /**
+     * The number of columns in each band, for grids without tiles.
+     */
+    private static final int BAND = 256;
+
+    /**
+     * The elevation grid.
+     */
+    private ElevationGrid grid;
+
+    /**
+     * BandWalker class constructor.
+     *
+     * @param grid
+     * @param disableMiddlePriority
+     * @param seed
+     * @return self
+     */
+    public BandWalker(ElevationGrid grid, boolean disableMiddlePriority, long seed) {
+        super(grid, disableMiddlePriority, seed);
+
+        this.grid = grid;
+    }
+
+    /**
+     * Walk a path from every row of the first column, band by band, with each
+     * band split across threads by starting row.
+     *
+     * @param moves
+     * @return int[]
+     */
+    @Override
+    public int[] walkAll(byte[] moves) {
+        int rows = grid.getRows();
+        int steps = grid.getCols() - 1;
+        int band = grid.isOutOfCore() ? ((TiledGrid) grid).getTileSize() : BAND;
+
+        // The state of each path between bands.
+        int[] positions = new int[rows];
+        int[] totals = new int[rows];
+        long[] random = new long[rows];
+
+        for (int i = 0; i < rows; i++) {
+            positions[i] = i;
+            random[i] = seed(i);
+        }
+
+        for (int start = 0; start < steps; start += band) {
+            int from = start;
+            int to = Math.min(start + band, steps);
+
+            Parallel.forEach(rows, (first, last) -> {
+                for (int i = first; i < last; i++) {
+                    int row = positions[i];
+
+                    for (int j = from; j < to; j++) {
+                        long step = step(row, j);
+                        int move = getMove(step);
+
+                        if (getTie(step) != NO_TIE) {
+                            random[i] += GOLDEN_GAMMA;
+                            move = breakTie(getTie(step), row, mix(random[i]));
+                        }
+
+                        if (moves != null) {
+                            moves[i * steps + j] = (byte) move;
+                        }
+
+                        row += move;
+                        totals[i] += getChange(step);
+                    }
+
+                    positions[i] = row;
+                }
+            });
+        }
+
+        return totals;
+    }
+}
@@ -0,0 +1,377 @@
+import java.io.File;
+import java.util.List;
+import java.util.Arrays;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.nio.file.PathMatcher;
+import java.nio.file.FileSystems;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Batch class.
+ *
+ * Processes every grid file in some directories or matching some glob
+ * patterns in a single run, printing the results of each file as a line of
+ * JSON or CSV in the order the files were listed. Files are loaded on threads
+ * of their own, virtual threads where the runtime has them, so reading one
+ * file overlaps with the work on others. A fixed pool of platform threads
+ * limits how many files are worked on at once, while the statistics and paths
+ * of each are computed on the shared worker threads.
+ *
+ * A memory budget limits how many grids are held at once. Before a file is
+ * loaded it reserves the most memory it could need, from its dimensions, its
+ * format and the modes in use; once it is loaded and the size of its values
+ * is known, it gives back what it will not need, and the rest once its results
+ * are written. A file larger than the whole budget is processed on its own.
+ */
+public class Batch {
+
+    /**
+     * The most bytes held for each cell of a text matrix while it is parsed,
+     * when its 16-bit values are widened to 32 bits.
+     */
+    private static final long PARSE_BYTES = Short.BYTES + Integer.BYTES;
+
+    /**
+     * The bytes held for each cell by the moves of the stored paths.
+     */
+    private static final long MOVE_BYTES = 1;
+
+    /**
+     * The bytes held for each cell by the search state of a point-to-point
+     * route: its costs and directions.
+     */
+    private static final long ROUTE_BYTES = Long.BYTES + 1;
+
+    /**
+     * The extensions of the files found in a directory.
+     */
+    private static final String[] EXTENSIONS = { ".dat", ".elev", ".tiles" };
+
+    /**
+     * Process every grid file in the given directories or matching the given
+     * glob patterns.
+     *
+     * @param sources
+     * @param flag
+     * @param optimal
+     * @param seed
+     * @param trail
+     * @param format
+     * @param jobs
+     * @param budget
+     * @return void
+     */
+    public static void run(List<String> sources, boolean flag, boolean optimal, long seed, int[] trail,
+            String format, int jobs, int budget) {
+        if (!format.equals("json") && !format.equals("csv")) {
+            Console.out(String.format("Unknown output format: %s", format));
+            return;
+        }
+
+        List<String> files = listFiles(sources);
+
+        if (files.isEmpty()) {
+            Console.out("No grid files were found.");
+            return;
+        }
+
+        if (format.equals("csv")) {
+            Console.out(Headless.CSV_HEADER + (trail != null ? Headless.TRAIL_HEADER : ""));
+        }
+
+        Semaphore memory = new Semaphore(budget, true);
+        ExecutorService loaders = Parallel.newVirtualExecutor();
+        ExecutorService workers = Executors.newFixedThreadPool(jobs);
+        List<Future<String>> results = new ArrayList<>();
+        int printed = 0;
+
+        try {
+            for (String file : files) {
+                int megabytes = reserve(file, optimal, trail != null, budget);
+
+                // Wait for room in the budget, printing any results that are ready.
+                while (!memory.tryAcquire(megabytes, 100, TimeUnit.MILLISECONDS)) {
+                    printed = print(results, printed, false);
+                }
+
+                results.add(loaders.submit(() -> process(file, flag, optimal, seed, trail, format, workers,
+                        memory, megabytes, budget)));
+
+                printed = print(results, printed, false);
+            }
+
+            print(results, printed, true);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            loaders.shutdownNow();
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * List the grid files in the given directories or matching the given glob
+     * patterns, in order. Any other source is taken as a file.
+     *
+     * @param sources
+     * @return List<String>
+     */
+    public static List<String> listFiles(List<String> sources) {
+        List<String> files = new ArrayList<>();
+
+        for (String source : sources) {
+            File[] children;
+
+            if (source.matches(".*[*?\\[{].*")) {
+                Path pattern = Paths.get(source);
+                Path parent = pattern.getParent() != null ? pattern.getParent() : Paths.get("");
+                PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern.getFileName());
+
+                children = parent.toAbsolutePath().toFile().listFiles((directory, name) ->
+                        matcher.matches(Paths.get(name)));
+                children = children == null ? new File[0] : children;
+
+                // Keep the paths relative if the pattern was.
+                for (int i = 0; i < children.length; i++) {
+                    children[i] = parent.resolve(children[i].getName()).toFile();
+                }
+            } else if (new File(source).isDirectory()) {
+                children = new File(source).listFiles((directory, name) -> isGrid(name));
+            } else {
+                files.add(source);
+                continue;
+            }
+
+            Arrays.sort(children);
+
+            for (File child : children) {
+                if (child.isFile()) {
+                    files.add(child.getPath());
+                }
+            }
+        }
+
+        return files;
+    }
+
+    /**
+     * Load a file and describe its results as a line of JSON or CSV, or as a
+     * message if it could not be processed. Any of the memory reserved for it
+     * that the loaded grid will not need is given back straight away, and the
+     * rest once the results are ready.
+     *
+     * @param file
+     * @param flag
+     * @param optimal
+     * @param seed
+     * @param trail
+     * @param format
+     * @param workers
+     * @param memory
+     * @param reserved
+     * @param budget
+     * @return String
+     * @throws InterruptedException
+     */
+    private static String process(String file, boolean flag, boolean optimal, long seed, int[] trail,
+            String format, ExecutorService workers, Semaphore memory, int reserved, int budget)
+            throws InterruptedException {
+        int held = reserved;
+
+        try {
+            ElevationGrid grid;
+
+            if (!new File(file).canRead()) {
+                return String.format("There was a problem opening or reading the file: %s", file);
+            }
+
+            try {
+                grid = Matrix.load(file);
+            } catch (IOException e) {
+                return String.format("There was a problem opening or reading the file: %s", file);
+            } catch (IllegalArgumentException e) {
+                return e.getMessage();
+            }
+
+            // Give back what the grid turned out not to need. A tiled grid may
+            // fill its tile cache later, so it keeps the most that can take.
+            long gridBytes = grid.isOutOfCore() ? getTileBytes(grid.getRows(), grid.getCols())
+                    : grid.getMemoryUsage();
+            int needed = toMegabytes(estimate(grid.getRows(), grid.getCols(), gridBytes, grid.isOutOfCore(),
+                    optimal, trail != null), budget);
+
+            if (needed < held) {
+                memory.release(held - needed);
+                held = needed;
+            }
+
+            // Work on the file on the platform pool, waiting here for the results.
+            Future<String> result = workers.submit(() -> {
+                Scene scene = new Scene(grid, flag, optimal, seed);
+
+                if (trail != null) {
+                    scene.setTrail(trail);
+                }
+
+                return Headless.describe(file, scene, format);
+            });
+
+            try {
+                return result.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IllegalArgumentException) {
+                    return e.getCause().getMessage();
+                }
+
+                throw new IllegalStateException(e.getCause());
+            }
+        } finally {
+            memory.release(held);
+        }
+    }
+
+    /**
+     * Print the results that are ready, in order, from a given index, waiting
+     * for the rest if asked to.
+     *
+     * @param results
+     * @param from
+     * @param wait
+     * @return int
+     * @throws InterruptedException
+     */
+    private static int print(List<Future<String>> results, int from, boolean wait) throws InterruptedException {
+        int next = from;
+
+        while (next < results.size() && (wait || results.get(next).isDone())) {
+            try {
+                Console.out(results.get(next).get());
+            } catch (ExecutionException e) {
+                Console.out(String.format("There was a problem processing the file: %s", e.getCause()));
+            }
+
+            // Let the finished result be collected.
+            results.set(next++, null);
+        }
+
+        return next;
+    }
+
+    /**
+     * Get the most memory processing a file could need, in whole megabytes of
+     * the budget, from the dimensions in its name and its format. A file whose
+     * size is unknown takes the whole budget.
+     *
+     * @param file
+     * @param optimal
+     * @param route
+     * @param budget
+     * @return int
+     */
+    private static int reserve(String file, boolean optimal, boolean route, int budget) {
+        int[] dimensions;
+
+        try {
+            dimensions = Matrix.parseDimensions(new File(file).getName());
+        } catch (IllegalArgumentException e) {
+            return budget;
+        }
+
+        // Binary grids are mapped from the file, tiled grids hold up to their
+        // tile budget on the heap and text matrices are read onto it whole.
+        boolean tiled = TiledGrid.isTiled(file);
+        long gridBytes;
+
+        if (tiled) {
+            gridBytes = getTileBytes(dimensions[0], dimensions[1]);
+        } else if (BinaryGrid.isBinary(file)) {
+            gridBytes = 0;
+        } else {
+            gridBytes = (long) dimensions[0] * dimensions[1] * PARSE_BYTES;
+        }
+
+        return toMegabytes(estimate(dimensions[0], dimensions[1], gridBytes, tiled, optimal, route), budget);
+    }
+
+    /**
+     * Estimate the most memory processing a grid takes, in bytes: the grid
+     * itself, the moves of the paths, and the search state of the route and
+     * the sources of the optimal paths if they are asked for.
+     *
+     * @param rows
+     * @param cols
+     * @param gridBytes
+     * @param outOfCore
+     * @param optimal
+     * @param route
+     * @return long
+     */
+    private static long estimate(int rows, int cols, long gridBytes, boolean outOfCore, boolean optimal,
+            boolean route) {
+        long cells = (long) rows * cols;
+        long bytes = gridBytes + (long) rows * Integer.BYTES;
+
+        // Grids on disk keep only the totals of their paths.
+        if (!outOfCore) {
+            bytes += cells * MOVE_BYTES;
+        }
+
+        if (optimal) {
+            bytes += cells / 4 + (long) rows * 2 * Integer.BYTES;
+        }
+
+        if (route) {
+            bytes += cells * ROUTE_BYTES;
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Get the most memory the tile cache of a tiled grid can take, in bytes:
+     * its tile budget, or all of its values if they take less.
+     *
+     * @param rows
+     * @param cols
+     * @return long
+     */
+    private static long getTileBytes(int rows, int cols) {
+        return Math.min(TiledGrid.getBudget(), (long) rows * cols * Integer.BYTES);
+    }
+
+    /**
+     * Convert a number of bytes to whole megabytes of the budget, from one
+     * megabyte up to the whole budget.
+     *
+     * @param bytes
+     * @param budget
+     * @return int
+     */
+    private static int toMegabytes(long bytes, int budget) {
+        return (int) Math.max(1, Math.min(budget, (bytes + (1 << 20) - 1) >> 20));
+    }
+
+    /**
+     * Check whether a file name has the extension of a grid file.
+     *
+     * @param name
+     * @return boolean
+     */
+    private static boolean isGrid(String name) {
+        for (String extension : EXTENSIONS) {
+            if (name.endsWith(extension)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
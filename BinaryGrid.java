@@ -0,0 +1,214 @@
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * BinaryGrid class.
+ *
+ * The binary grid format is a fixed header followed by the packed samples of
+ * the matrix in row-major order, all in little-endian byte order:
+ *
+ *   int magic, int rows, int cols, int min, int max, int sampleSize
+ *   sample[rows * cols]
+ *
+ * Samples are stored as 16-bit values whenever the range of the matrix fits,
+ * and as 32-bit values otherwise. The samples stay off-heap in the mapping and
+ * are read from it directly.
+ */
+public class BinaryGrid extends ElevationGrid {
+
+    /**
+     * The magic number identifying a binary grid file ("ELEV").
+     */
+    public static final int MAGIC = 0x56454C45;
+
+    /**
+     * The size of the file header in bytes.
+     */
+    public static final int HEADER_SIZE = 24;
+
+    /**
+     * The size of each sample in bytes.
+     */
+    private int sampleSize;
+
+    /**
+     * The memory-mapped samples.
+     */
+    private ByteBuffer samples;
+
+    /**
+     * BinaryGrid class constructor.
+     *
+     * Maps the file into memory without reading the samples, so pages are only
+     * loaded from disk as they are accessed.
+     *
+     * @param fileName
+     * @return self
+     * @throws IOException
+     */
+    public BinaryGrid(String fileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+            while (header.hasRemaining() && channel.read(header) >= 0);
+
+            header.flip();
+
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException("Missing binary grid header.");
+            }
+
+            rows = header.getInt();
+            cols = header.getInt();
+            min = header.getInt();
+            max = header.getInt();
+            sampleSize = header.getInt();
+
+            long length = (long) rows * cols * sampleSize;
+
+            if (rows <= 0 || cols <= 0 || (sampleSize != 2 && sampleSize != 4)) {
+                throw new IOException("Invalid binary grid header.");
+            }
+
+            if (length > Integer.MAX_VALUE || HEADER_SIZE + length > channel.size()) {
+                throw new IOException("Binary grid is truncated or too large to map.");
+            }
+
+            samples = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, length).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /**
+     * Get the value at a given position in the grid.
+     *
+     * @param row
+     * @param col
+     * @return int
+     */
+    @Override
+    public int get(int row, int col) {
+        int index = row * cols + col;
+
+        return sampleSize == 2 ? samples.getShort(index * 2) : samples.getInt(index * 4);
+    }
+
+    /**
+     * Copy a given row of the grid into a buffer of at least getCols() values.
+     *
+     * @param row
+     * @param buffer
+     * @return int[]
+     */
+    @Override
+    public int[] copyRow(int row, int[] buffer) {
+        int offset = row * cols;
+
+        if (sampleSize == 2) {
+            for (int i = 0; i < cols; i++) {
+                buffer[i] = samples.getShort((offset + i) * 2);
+            }
+        } else {
+            for (int i = 0; i < cols; i++) {
+                buffer[i] = samples.getInt((offset + i) * 4);
+            }
+        }
+
+        return buffer;
+    }
+
+    /**
+     * Check whether a given file starts with the binary grid header.
+     *
+     * @param fileName
+     * @return boolean
+     */
+    public static boolean isBinary(String fileName) {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+
+            while (magic.hasRemaining() && channel.read(magic) >= 0);
+
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Write a grid to a file in the binary grid format.
+     *
+     * @param fileName
+     * @param grid
+     * @return void
+     * @throws IOException
+     */
+    public static void write(String fileName, ElevationGrid grid) throws IOException {
+        int rows = grid.getRows();
+        int cols = grid.getCols();
+        int min = grid.getMin();
+        int max = grid.getMax();
+
+        // Pack the samples into 16 bits whenever the range allows it.
+        int sampleSize = min >= Short.MIN_VALUE && max <= Short.MAX_VALUE ? 2 : 4;
+
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+            header.putInt(MAGIC).putInt(rows).putInt(cols).putInt(min).putInt(max).putInt(sampleSize).flip();
+            writeFully(channel, header);
+
+            // Write one row at a time to keep the buffer small.
+            ByteBuffer row = ByteBuffer.allocate(cols * sampleSize).order(ByteOrder.LITTLE_ENDIAN);
+            int[] values = new int[cols];
+
+            for (int i = 0; i < rows; i++) {
+                row.clear();
+                grid.copyRow(i, values);
+
+                for (int j = 0; j < cols; j++) {
+                    if (sampleSize == 2) {
+                        row.putShort((short) values[j]);
+                    } else {
+                        row.putInt(values[j]);
+                    }
+                }
+
+                row.flip();
+                writeFully(channel, row);
+            }
+        }
+    }
+
+    /**
+     * Convert a text matrix file into the binary grid format.
+     *
+     * @param source
+     * @param target
+     * @return void
+     * @throws IOException
+     */
+    public static void convert(String source, String target) throws IOException {
+        int[] dimensions = Matrix.parseDimensions(source);
+
+        write(target, Matrix.fill(source, dimensions[0], dimensions[1]));
+    }
+
+    /**
+     * Write the entire contents of a buffer to a channel.
+     *
+     * @param channel
+     * @param buffer
+     * @return void
+     * @throws IOException
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
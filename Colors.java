@@ -16,12 +16,40 @@ public class Colors {
 
     public static final Color worstPath = Color.RED;
 
+    public static final Color routePath = Color.WHITE;
+
     public static final Color highElevation = new Color(181, 33, 22, 150);
 
     public static final Color midElevation = new Color(224, 186, 78, 150);
 
     public static final Color lowElevation = new Color(0, 90, 25, 150);
 
+    public static final Color lowTraffic = new Color(40, 30, 160, 110);
+
+    public static final Color midTraffic = new Color(240, 90, 30, 200);
+
+    public static final Color highTraffic = new Color(255, 245, 180, 255);
+
+    public static final Color gentleSlope = new Color(245, 240, 225);
+
+    public static final Color midSlope = new Color(215, 150, 70);
+
+    public static final Color steepSlope = new Color(110, 20, 20);
+
+    public static final Color flatAspect = Color.GRAY;
+
+    public static final Color northAspect = new Color(220, 40, 40);
+
+    public static final Color eastAspect = new Color(235, 210, 50);
+
+    public static final Color southAspect = new Color(40, 190, 200);
+
+    public static final Color westAspect = new Color(60, 70, 220);
+
+    public static final Color shadow = Color.BLACK;
+
+    public static final Color light = Color.WHITE;
+
     /**
      * Interpolate between two colors.
      *
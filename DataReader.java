@@ -0,0 +1,225 @@
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.FileInputStream;
+
+/**
+ * DataReader class.
+ */
+public class DataReader implements AutoCloseable {
+
+    /**
+     * The number of bytes to read from the file at a time.
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * The file input stream.
+     */
+    private InputStream stream;
+
+    /**
+     * The buffer of bytes read from the file.
+     */
+    private byte[] buffer = new byte[BUFFER_SIZE];
+
+    /**
+     * The position of the next unread byte in the buffer.
+     */
+    private int position = 0;
+
+    /**
+     * The number of valid bytes in the buffer.
+     */
+    private int limit = 0;
+
+    /**
+     * The position just after the next value in the buffer, once found.
+     */
+    private int end = 0;
+
+    /**
+     * Whether the next value has been parsed, but not yet consumed.
+     */
+    private boolean ready = false;
+
+    /**
+     * The next value, once parsed.
+     */
+    private int next = 0;
+
+    /**
+     * DataReader class constructor.
+     *
+     * @param fileName
+     * @return self
+     * @throws IOException
+     */
+    public DataReader(String fileName) throws IOException {
+        stream = new FileInputStream(fileName);
+    }
+
+    /**
+     * Check whether another value remains in the file, skipping any whitespace.
+     *
+     * @return boolean
+     * @throws IOException
+     */
+    public boolean hasNext() throws IOException {
+        while (true) {
+            if (position == limit && !refill()) {
+                return false;
+            }
+
+            if (buffer[position] > ' ') {
+                return true;
+            }
+
+            position++;
+        }
+    }
+
+    /**
+     * Check whether the next value in the file is an integer that fits in an
+     * int, without consuming it. As with a Scanner, a malformed value is never
+     * consumed, so once one is found no more integers are read.
+     *
+     * @return boolean
+     * @throws IOException
+     */
+    public boolean hasNextInt() throws IOException {
+        if (!ready && hasNext() && bufferValue()) {
+            ready = parse();
+        }
+
+        return ready;
+    }
+
+    /**
+     * Parse the next integer value from the file.
+     *
+     * Digits are accumulated directly from the buffer, so no objects are
+     * created per value. Anything other than an optionally signed run of
+     * digits that fits in an int is rejected.
+     *
+     * @return int
+     * @throws IOException
+     */
+    public int nextInt() throws IOException {
+        if (!hasNextInt()) {
+            throw new NumberFormatException(hasNext() ? "Malformed value." : "Unexpected end of file.");
+        }
+
+        ready = false;
+        position = end;
+
+        return next;
+    }
+
+    /**
+     * Close the file.
+     *
+     * @return void
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        stream.close();
+    }
+
+    /**
+     * Make sure the whole of the next value is in the buffer, moving it to the
+     * front and reading more of the file if it runs past the end. Returns
+     * false if the value is too long to fit.
+     *
+     * @return boolean
+     * @throws IOException
+     */
+    private boolean bufferValue() throws IOException {
+        int i = position;
+
+        while (true) {
+            while (i < limit && buffer[i] > ' ') {
+                i++;
+            }
+
+            if (i < limit) {
+                end = i;
+                return true;
+            }
+
+            if (position == 0 && limit == buffer.length) {
+                return false;
+            }
+
+            // Move the start of the value to the front and read the rest.
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            i -= position;
+            limit -= position;
+            position = 0;
+
+            int read = stream.read(buffer, limit, buffer.length - limit);
+
+            if (read < 0) {
+                end = limit;
+                return true;
+            }
+
+            limit += read;
+        }
+    }
+
+    /**
+     * Parse the value between the current position and the end of the value,
+     * returning false if it is not an integer that fits in an int.
+     *
+     * @return boolean
+     */
+    private boolean parse() {
+        int i = position;
+        boolean negative = buffer[i] == '-';
+
+        if (negative || buffer[i] == '+') {
+            i++;
+        }
+
+        if (i == end) {
+            return false;
+        }
+
+        // Accumulate negatively so that Integer.MIN_VALUE can be represented.
+        int bound = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        int value = 0;
+
+        for (; i < end; i++) {
+            int digit = buffer[i] - '0';
+
+            if (digit < 0 || digit > 9 || value < bound / 10 || value * 10 < bound + digit) {
+                return false;
+            }
+
+            value = value * 10 - digit;
+        }
+
+        next = negative ? value : -value;
+
+        return true;
+    }
+
+    /**
+     * Read the next chunk of the file into the buffer.
+     *
+     * @return boolean
+     * @throws IOException
+     */
+    private boolean refill() throws IOException {
+        limit = stream.read(buffer, 0, buffer.length);
+        position = 0;
+
+        if (limit < 0) {
+            limit = 0;
+            return false;
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,196 @@
+import java.io.IOException;
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.stream.IntStream;
+
+/**
+ * Density class.
+ *
+ * Counts how many of the stored paths cross each cell of a grid. The paths are
+ * shared out between the worker threads, each counting into a buffer of its
+ * own, and the buffers are merged once every path has been counted, so that
+ * no count is written by more than one thread. The counts can be written out
+ * as a text matrix, in the same format as the elevation files.
+ */
+public class Density {
+
+    /**
+     * The most memory the extra buffers of the worker threads may take, in
+     * bytes.
+     */
+    private static final long BUFFER_BUDGET = 256L << 20;
+
+    /**
+     * The stored paths being counted.
+     */
+    private PathStore paths;
+
+    /**
+     * The number of rows in the matrix.
+     */
+    private int rows;
+
+    /**
+     * The number of columns in the matrix.
+     */
+    private int cols;
+
+    /**
+     * The number of paths crossing each cell, row by row.
+     */
+    private int[] counts;
+
+    /**
+     * The highest count of any cell.
+     */
+    private int max;
+
+    /**
+     * Density class constructor.
+     *
+     * @param paths
+     * @param rows
+     * @param cols
+     * @return self
+     */
+    public Density(PathStore paths, int rows, int cols) {
+        this.paths = paths;
+        this.rows = rows;
+        this.cols = cols;
+        this.counts = new int[rows * cols];
+    }
+
+    /**
+     * Check whether the counts are for the given stored paths.
+     *
+     * @param paths
+     * @return boolean
+     */
+    public boolean isFor(PathStore paths) {
+        return this.paths == paths;
+    }
+
+    /**
+     * Count the paths starting from the rows in [from, to).
+     *
+     * The first worker counts straight into the totals, and each other worker
+     * into a buffer of its own, with fewer workers if the buffers would not
+     * fit in the budget.
+     *
+     * @param from
+     * @param to
+     * @return void
+     */
+    public void add(int from, int to) {
+        long cellBytes = (long) rows * cols * Integer.BYTES;
+        int workers = (int) Math.max(1, Math.min(Math.min(Parallel.getParallelism(), to - from),
+                1 + BUFFER_BUDGET / cellBytes));
+        int[][] buffers = new int[workers][];
+
+        try (Stage stage = Metrics.start("density")) {
+            stage.setCells((long) (to - from) * cols).setPaths(to - from);
+
+            // Count each worker's share of the paths into its buffer.
+            Runnable count = () -> IntStream.range(0, workers).parallel().forEach(worker -> {
+                int[] buffer = worker == 0 ? counts : new int[rows * cols];
+                int[] positions = new int[cols];
+                int start = from + (int) ((long) worker * (to - from) / workers);
+                int end = from + (int) ((long) (worker + 1) * (to - from) / workers);
+
+                for (int i = start; i < end; i++) {
+                    paths.getPositions(i, positions);
+
+                    for (int j = 0; j < cols; j++) {
+                        buffer[positions[j] * cols + j]++;
+                    }
+                }
+
+                buffers[worker] = buffer;
+            });
+
+            if (workers == 1) {
+                count.run();
+            } else {
+                Parallel.getPool().submit(count).join();
+            }
+
+            // Merge the buffers into the totals, finding the highest count.
+            max = Parallel.reduce(rows, (start, end) -> {
+                int most = 0;
+
+                for (int i = start * cols; i < end * cols; i++) {
+                    for (int worker = 1; worker < workers; worker++) {
+                        counts[i] += buffers[worker][i];
+                    }
+
+                    most = Math.max(most, counts[i]);
+                }
+
+                return most;
+            }, Math::max);
+        }
+    }
+
+    /**
+     * Get the number of paths crossing a given cell.
+     *
+     * @param row
+     * @param col
+     * @return int
+     */
+    public int get(int row, int col) {
+        return counts[row * cols + col];
+    }
+
+    /**
+     * Get the number of paths crossing each cell, row by row.
+     *
+     * @return int[]
+     */
+    public int[] getCounts() {
+        return counts;
+    }
+
+    /**
+     * Get the number of bytes taken by the counts.
+     *
+     * @return long
+     */
+    public long getMemoryUsage() {
+        return (long) counts.length * Integer.BYTES;
+    }
+
+    /**
+     * Get the highest count of any cell.
+     *
+     * @return int
+     */
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * Write the counts to a text matrix file, one row per line.
+     *
+     * @param target
+     * @return void
+     * @throws IOException
+     */
+    public void write(String target) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(target))) {
+            StringBuilder line = new StringBuilder();
+
+            for (int i = 0; i < rows; i++) {
+                line.setLength(0);
+
+                for (int j = 0; j < cols; j++) {
+                    line.append(j == 0 ? "" : " ").append(counts[i * cols + j]);
+                }
+
+                writer.write(line.toString());
+                writer.newLine();
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * ElevationGrid class.
+ *
+ * A grid of elevations stored in a single contiguous block in row-major order,
+ * rather than as an array of separately allocated rows.
+ */
+public abstract class ElevationGrid {
+
+    /**
+     * The number of rows in the grid.
+     */
+    protected int rows;
+
+    /**
+     * The number of columns in the grid.
+     */
+    protected int cols;
+
+    /**
+     * The minimum value in the grid.
+     */
+    protected int min;
+
+    /**
+     * The maximum value in the grid.
+     */
+    protected int max;
+
+    /**
+     * The cached statistics of the grid.
+     */
+    private Statistics statistics;
+
+    /**
+     * Get the number of rows in the grid.
+     *
+     * @return int
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Get the number of columns in the grid.
+     *
+     * @return int
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Get the minimum value in the grid.
+     *
+     * @return int
+     */
+    public int getMin() {
+        return min;
+    }
+
+    /**
+     * Get the maximum value in the grid.
+     *
+     * @return int
+     */
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * Check whether the grid is kept on disk rather than in memory, in which
+     * case it should be streamed rather than copied or indexed per cell.
+     *
+     * @return boolean
+     */
+    public boolean isOutOfCore() {
+        return false;
+    }
+
+    /**
+     * Get the number of bytes the grid keeps on the heap, not counting any
+     * file mapped into memory.
+     *
+     * @return long
+     */
+    public long getMemoryUsage() {
+        return 0;
+    }
+
+    /**
+     * Get the statistics of the grid, computing them on first use.
+     *
+     * @return Statistics
+     */
+    public synchronized Statistics getStatistics() {
+        if (statistics == null) {
+            try (Stage stage = Metrics.start("statistics")) {
+                stage.setCells((long) rows * cols);
+
+                statistics = Statistics.of(this);
+            }
+        }
+
+        return statistics;
+    }
+
+    /**
+     * Get the value at a given position in the grid.
+     *
+     * @param row
+     * @param col
+     * @return int
+     */
+    public abstract int get(int row, int col);
+
+    /**
+     * Copy a given row of the grid into a buffer of at least getCols() values.
+     *
+     * @param row
+     * @param buffer
+     * @return int[]
+     */
+    public int[] copyRow(int row, int[] buffer) {
+        for (int i = 0; i < cols; i++) {
+            buffer[i] = get(row, i);
+        }
+
+        return buffer;
+    }
+}
@@ -0,0 +1,270 @@
+import java.util.List;
+import java.util.Arrays;
+import java.util.Locale;
+import java.io.IOException;
+import java.util.SplittableRandom;
+
+/**
+ * Ensemble class.
+ *
+ * Runs many trials of the greedy paths over the same grid, each with its own
+ * random seed, to see how much the random tie-breaks matter. The seed of each
+ * trial is drawn in turn from a stream seeded with a single master seed, so a
+ * whole ensemble can be repeated, and any one trial can be shown again by
+ * passing its seed as "--seed". Every trial walks a path from each row in
+ * parallel, with each path drawing from its own stream split from the trial's
+ * seed.
+ */
+public class Ensemble {
+
+    /**
+     * The columns of a CSV result line.
+     */
+    private static final String CSV_HEADER = "file,rows,cols,trials,seed,"
+            + "leastMin,leastMean,leastP5,leastP50,leastP95,leastMax,"
+            + "mostMin,mostMean,mostP5,mostP50,mostP95,mostMax,"
+            + "bestChange,bestRow,bestSeed,steadiestRow,steadiestMean";
+
+    /**
+     * The number of rows in the matrix.
+     */
+    private int rows;
+
+    /**
+     * The number of columns in the matrix.
+     */
+    private int cols;
+
+    /**
+     * The master seed the trial seeds were drawn from.
+     */
+    private long seed;
+
+    /**
+     * The seed of each trial.
+     */
+    private long[] seeds;
+
+    /**
+     * The least and greatest total elevation change of any path in each trial.
+     */
+    private int[] least;
+
+    private int[] most;
+
+    /**
+     * The row of the path of least total elevation change in each trial.
+     */
+    private int[] leastRows;
+
+    /**
+     * The total elevation change of the path from each row, summed over every
+     * trial.
+     */
+    private long[] rowTotals;
+
+    /**
+     * Ensemble class constructor. Runs every trial.
+     *
+     * @param grid
+     * @param disableMiddlePriority
+     * @param seed
+     * @param trials
+     * @return self
+     */
+    public Ensemble(ElevationGrid grid, boolean disableMiddlePriority, long seed, int trials) {
+        if (trials < 1) {
+            throw new IllegalArgumentException("The number of trials must be a positive integer.");
+        }
+
+        this.rows = grid.getRows();
+        this.cols = grid.getCols();
+        this.seed = seed;
+        this.seeds = new long[trials];
+        this.least = new int[trials];
+        this.most = new int[trials];
+        this.leastRows = new int[trials];
+        this.rowTotals = new long[rows];
+
+        SplittableRandom master = new SplittableRandom(seed);
+
+        for (int i = 0; i < trials; i++) {
+            seeds[i] = master.nextLong();
+
+            try (Stage stage = Metrics.start("trial")) {
+                stage.setCells((long) rows * (cols - 1)).setPaths(rows);
+
+                int[] totals = Walker.create(grid, disableMiddlePriority, seeds[i]).walkAll();
+
+                least[i] = Integer.MAX_VALUE;
+                most[i] = Integer.MIN_VALUE;
+
+                for (int j = 0; j < rows; j++) {
+                    if (totals[j] < least[i]) {
+                        least[i] = totals[j];
+                        leastRows[i] = j;
+                    }
+
+                    most[i] = Math.max(most[i], totals[j]);
+                    rowTotals[j] += totals[j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the number of trials.
+     *
+     * @return int
+     */
+    public int getTrials() {
+        return seeds.length;
+    }
+
+    /**
+     * Get the trial whose best path had the least total elevation change,
+     * taking the earliest on a tie.
+     *
+     * @return int
+     */
+    public int getBestTrial() {
+        int best = 0;
+
+        for (int i = 1; i < least.length; i++) {
+            if (least[i] < least[best]) {
+                best = i;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Get the row whose paths had the least total elevation change on average.
+     *
+     * @return int
+     */
+    public int getSteadiestRow() {
+        int steadiest = 0;
+
+        for (int i = 1; i < rows; i++) {
+            if (rowTotals[i] < rowTotals[steadiest]) {
+                steadiest = i;
+            }
+        }
+
+        return steadiest;
+    }
+
+    /**
+     * Describe the ensemble as lines of text, or as a line of JSON or CSV.
+     *
+     * @param file
+     * @param format
+     * @return String
+     */
+    public String describe(String file, String format) {
+        int best = getBestTrial();
+        int steadiest = getSteadiestRow();
+        double steadiestMean = (double) rowTotals[steadiest] / seeds.length;
+        double[] leastSummary = summarize(least);
+        double[] mostSummary = summarize(most);
+
+        if (format.equals("text")) {
+            return String.format(Locale.ROOT, "%nENSEMBLE of %d trials from seed %d: %s%n"
+                    + "Least change per trial: min %.0f, mean %.1f, p5 %.0f, p50 %.0f, p95 %.0f, max %.0f%n"
+                    + "Most change per trial: min %.0f, mean %.1f, p5 %.0f, p50 %.0f, p95 %.0f, max %.0f%n"
+                    + "BEST path: %d from row %d with seed %d%n"
+                    + "STEADIEST start: row %d, with a mean change of %.1f%n",
+                    seeds.length, seed, file, leastSummary[0], leastSummary[1], leastSummary[2], leastSummary[3],
+                    leastSummary[4], leastSummary[5], mostSummary[0], mostSummary[1], mostSummary[2],
+                    mostSummary[3], mostSummary[4], mostSummary[5], least[best], leastRows[best], seeds[best],
+                    steadiest, steadiestMean);
+        }
+
+        if (format.equals("csv")) {
+            return String.format(Locale.ROOT, "\"%s\",%d,%d,%d,%d,%.0f,%.3f,%.0f,%.0f,%.0f,%.0f,"
+                    + "%.0f,%.3f,%.0f,%.0f,%.0f,%.0f,%d,%d,%d,%d,%.3f", file.replace("\"", "\"\""), rows, cols,
+                    seeds.length, seed, leastSummary[0], leastSummary[1], leastSummary[2], leastSummary[3],
+                    leastSummary[4], leastSummary[5], mostSummary[0], mostSummary[1], mostSummary[2],
+                    mostSummary[3], mostSummary[4], mostSummary[5], least[best], leastRows[best], seeds[best], steadiest, steadiestMean);
+        }
+
+        return String.format(Locale.ROOT, "{\"file\":\"%s\",\"rows\":%d,\"cols\":%d,\"trials\":%d,\"seed\":%d,"
+                + "\"leastMin\":%.0f,\"leastMean\":%.3f,\"leastP5\":%.0f,\"leastP50\":%.0f,\"leastP95\":%.0f,"
+                + "\"leastMax\":%.0f,\"mostMin\":%.0f,\"mostMean\":%.3f,\"mostP5\":%.0f,\"mostP50\":%.0f,"
+                + "\"mostP95\":%.0f,\"mostMax\":%.0f,\"bestChange\":%d,\"bestRow\":%d,\"bestSeed\":%d,"
+                + "\"steadiestRow\":%d,\"steadiestMean\":%.3f}", file.replace("\\", "\\\\").replace("\"", "\\\""),
+                rows, cols, seeds.length, seed, leastSummary[0], leastSummary[1], leastSummary[2],
+                leastSummary[3], leastSummary[4], leastSummary[5], mostSummary[0], mostSummary[1],
+                mostSummary[2], mostSummary[3], mostSummary[4], mostSummary[5], least[best], leastRows[best],
+                seeds[best], steadiest, steadiestMean);
+    }
+
+    /**
+     * Run an ensemble for each of the given files and print the results.
+     *
+     * @param files
+     * @param flag
+     * @param seed
+     * @param trials
+     * @param format
+     * @return void
+     */
+    public static void run(List<String> files, boolean flag, long seed, int trials, String format) {
+        if (!format.equals("text") && !format.equals("json") && !format.equals("csv")) {
+            Console.out(String.format("Unknown output format: %s", format));
+            return;
+        }
+
+        if (format.equals("csv")) {
+            Console.out(CSV_HEADER);
+        }
+
+        for (String file : files) {
+            try {
+                Console.out(new Ensemble(Matrix.load(file), flag, seed, trials).describe(file, format));
+            } catch (IOException e) {
+                Console.out(String.format("There was a problem opening or reading the file: %s", file));
+            } catch (IllegalArgumentException e) {
+                Console.out(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Summarize a set of totals as { min, mean, p5, p50, p95, max }, taking
+     * each percentile as the nearest ranked total.
+     *
+     * @param totals
+     * @return double[]
+     */
+    private static double[] summarize(int[] totals) {
+        int[] sorted = totals.clone();
+        long sum = 0;
+
+        Arrays.sort(sorted);
+
+        for (int total : sorted) {
+            sum += total;
+        }
+
+        return new double[] {
+            sorted[0], (double) sum / sorted.length, percentile(sorted, 5), percentile(sorted, 50),
+            percentile(sorted, 95), sorted[sorted.length - 1]
+        };
+    }
+
+    /**
+     * Get a given percentile of some sorted totals, by the nearest rank.
+     *
+     * @param sorted
+     * @param percent
+     * @return int
+     */
+    private static int percentile(int[] sorted, int percent) {
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+
+        return sorted[Math.max(rank, 1) - 1];
+    }
+}
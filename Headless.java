@@ -0,0 +1,232 @@
+import java.io.File;
+import java.util.List;
+import java.util.Locale;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+
+/**
+ * Headless class.
+ *
+ * Processes files without opening a window, for scripted batch runs. Each file
+ * is loaded, its statistics and paths are computed, and either the composited
+ * map is saved as a PNG, the number of paths crossing each cell is saved as a
+ * text matrix, or the results are written to standard output as JSON (one
+ * object per line) or CSV.
+ */
+public class Headless {
+
+    /**
+     * The columns of a CSV result line.
+     */
+    public static final String CSV_HEADER = "file,rows,cols,min,minRow,minCol,max,maxRow,maxCol,mean,"
+            + "leastChange,leastRow,mostChange,mostRow";
+
+    /**
+     * The extra columns of a CSV result line with a point-to-point route.
+     */
+    public static final String TRAIL_HEADER = ",fromRow,fromCol,toRow,toCol,routeChange,routeLength";
+
+    /**
+     * Process the given files.
+     *
+     * @param files
+     * @param flag
+     * @param optimal
+     * @param seed
+     * @param trail
+     * @param heat
+     * @param layer
+     * @param format
+     * @param output
+     * @return void
+     */
+    public static void run(List<String> files, boolean flag, boolean optimal, long seed, int[] trail,
+            boolean heat, int layer, String format, String output) {
+        if (!format.equals("png") && !format.equals("density") && !format.equals("json")
+                && !format.equals("csv")) {
+            Console.out(String.format("Unknown output format: %s", format));
+            return;
+        }
+
+        if (format.equals("csv")) {
+            Console.out(CSV_HEADER + (trail != null ? TRAIL_HEADER : ""));
+        }
+
+        for (String file : files) {
+            ElevationGrid grid;
+
+            try {
+                grid = Matrix.load(file);
+            } catch (IOException e) {
+                Console.out(String.format("There was a problem opening or reading the file: %s", file));
+                continue;
+            } catch (IllegalArgumentException e) {
+                Console.out(e.getMessage());
+                continue;
+            }
+
+            Scene scene = new Scene(grid, flag, optimal, seed);
+
+            // Report anything the grid cannot be used for, such as the layers
+            // and images a tiled grid is too large for, and go on to the next.
+            try {
+                scene.setHeat(heat, null);
+                scene.setLayer(layer);
+
+                if (trail != null) {
+                    scene.setTrail(trail);
+                }
+
+                if (format.equals("png")) {
+                    writeImage(scene, outputName(file, output, ".png"));
+                } else if (format.equals("density")) {
+                    writeDensity(scene, densityName(file, output));
+                } else {
+                    Console.out(describe(file, scene, format));
+                }
+            } catch (IllegalArgumentException e) {
+                Console.out(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Save the composited scene as a PNG.
+     *
+     * @param scene
+     * @param target
+     * @return void
+     */
+    private static void writeImage(Scene scene, String target) {
+        BufferedImage image = scene.compose();
+
+        try (Stage stage = Metrics.start("encode")) {
+            stage.setCells((long) image.getWidth() * image.getHeight());
+
+            ImageIO.write(image, "png", new File(target));
+            Console.out(String.format("Wrote map: %s", target));
+        } catch (IOException e) {
+            Console.out(String.format("There was a problem writing the file: %s", target));
+        }
+    }
+
+    /**
+     * Save the number of paths crossing each cell as a text matrix.
+     *
+     * @param scene
+     * @param target
+     * @return void
+     */
+    private static void writeDensity(Scene scene, String target) {
+        Density density = scene.getDensity();
+
+        try (Stage stage = Metrics.start("export")) {
+            stage.setCells((long) scene.getGrid().getRows() * scene.getGrid().getCols());
+
+            density.write(target);
+            Console.out(String.format("Wrote path density: %s", target));
+        } catch (IOException e) {
+            Console.out(String.format("There was a problem writing the file: %s", target));
+        }
+    }
+
+    /**
+     * Describe the results for a file as a line of JSON or CSV.
+     *
+     * @param file
+     * @param scene
+     * @param format
+     * @return String
+     */
+    public static String describe(String file, Scene scene, String format) {
+        ElevationGrid grid = scene.getGrid();
+        Route best = scene.getBest();
+        Route worst = scene.getWorst();
+        Statistics statistics = grid.getStatistics();
+        int[] minIndex = statistics.getMinIndex();
+        int[] maxIndex = statistics.getMaxIndex();
+
+        Object[] values = {
+            grid.getRows(), grid.getCols(),
+            statistics.getMin(), minIndex[0], minIndex[1],
+            statistics.getMax(), maxIndex[0], maxIndex[1],
+            statistics.getMean(),
+            best.getTotal(), best.getStart(),
+            worst.getTotal(), worst.getStart()
+        };
+
+        String line;
+
+        if (format.equals("csv")) {
+            line = String.format(Locale.ROOT, "\"%s\",%d,%d,%d,%d,%d,%d,%d,%d,%.3f,%d,%d,%d,%d",
+                    file.replace("\"", "\"\""), values[0], values[1], values[2], values[3], values[4],
+                    values[5], values[6], values[7], values[8], values[9], values[10], values[11], values[12]);
+        } else {
+            line = String.format(Locale.ROOT, "{\"file\":\"%s\",\"rows\":%d,\"cols\":%d,"
+                    + "\"min\":%d,\"minRow\":%d,\"minCol\":%d,\"max\":%d,\"maxRow\":%d,\"maxCol\":%d,\"mean\":%.3f,"
+                    + "\"leastChange\":%d,\"leastRow\":%d,\"mostChange\":%d,\"mostRow\":%d",
+                    file.replace("\\", "\\\\").replace("\"", "\\\""), values[0], values[1], values[2], values[3],
+                    values[4], values[5], values[6], values[7], values[8], values[9], values[10], values[11], values[12]);
+        }
+
+        // Add the point-to-point route, if there is one.
+        Trail trail = scene.getTrail();
+
+        if (trail != null) {
+            int[] ends = scene.getTrailEnds();
+
+            String fields = format.equals("csv") ? ",%d,%d,%d,%d,%d,%d"
+                    : ",\"fromRow\":%d,\"fromCol\":%d,\"toRow\":%d,\"toCol\":%d,"
+                    + "\"routeChange\":%d,\"routeLength\":%d";
+
+            line += String.format(fields, ends[0], ends[1], ends[2], ends[3], trail.getCost(),
+                    trail.getCells().length);
+        }
+
+        return format.equals("csv") ? line : line + "}";
+    }
+
+    /**
+     * Build the name of the path density matrix for a given file. The name
+     * keeps the dimensions at the end, as in "Name-density_WxH.dat", so that
+     * the matrix can be loaded like any other.
+     *
+     * @param file
+     * @param output
+     * @return String
+     */
+    private static String densityName(String file, String output) {
+        String name = new File(outputName(file, output, ".dat")).getPath();
+        int underscore = name.lastIndexOf("_");
+
+        if (underscore <= name.lastIndexOf(File.separator)) {
+            return name.substring(0, name.length() - 4) + "-density.dat";
+        }
+
+        return name.substring(0, underscore) + "-density" + name.substring(underscore);
+    }
+
+    /**
+     * Build the name of an output file with a given extension for a given
+     * file, in the output directory if one was given and next to the file
+     * otherwise.
+     *
+     * @param file
+     * @param output
+     * @param suffix
+     * @return String
+     */
+    private static String outputName(String file, String output, String suffix) {
+        String name = new File(file).getName();
+        int extension = name.lastIndexOf(".");
+
+        if (extension > 0) {
+            name = name.substring(0, extension);
+        }
+
+        File directory = output != null ? new File(output) : new File(file).getAbsoluteFile().getParentFile();
+
+        return new File(directory, name + suffix).getPath();
+    }
+}
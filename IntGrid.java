@@ -0,0 +1,67 @@
+/**
+ * IntGrid class.
+ *
+ * An elevation grid backed by a single on-heap array of 32-bit values, for
+ * data whose range does not fit in 16 bits.
+ */
+public class IntGrid extends ElevationGrid {
+
+    /**
+     * The values of the grid in row-major order.
+     */
+    private int[] values;
+
+    /**
+     * IntGrid class constructor.
+     *
+     * @param rows
+     * @param cols
+     * @param min
+     * @param max
+     * @param values
+     * @return self
+     */
+    public IntGrid(int rows, int cols, int min, int max, int[] values) {
+        this.rows = rows;
+        this.cols = cols;
+        this.min = min;
+        this.max = max;
+        this.values = values;
+    }
+
+    /**
+     * Get the value at a given position in the grid.
+     *
+     * @param row
+     * @param col
+     * @return int
+     */
+    @Override
+    public int get(int row, int col) {
+        return values[row * cols + col];
+    }
+
+    /**
+     * Copy a given row of the grid into a buffer of at least getCols() values.
+     *
+     * @param row
+     * @param buffer
+     * @return int[]
+     */
+    @Override
+    public int[] copyRow(int row, int[] buffer) {
+        System.arraycopy(values, row * cols, buffer, 0, cols);
+
+        return buffer;
+    }
+
+    /**
+     * Get the number of bytes the grid keeps on the heap.
+     *
+     * @return long
+     */
+    @Override
+    public long getMemoryUsage() {
+        return (long) values.length * Integer.BYTES;
+    }
+}
@@ -1,5 +1,3 @@
-import java.io.File;
-import java.util.Scanner;
 import java.io.IOException;
 
 /**
@@ -8,50 +6,161 @@ import java.io.IOException;
 public class Matrix {
 
     /**
-     * Fill a matrix of integers from the contents of a file.
+     * The most cells a text matrix can have, as its values are held in a
+     * single array.
+     */
+    private static final long MAX_CELLS = Integer.MAX_VALUE - 8;
+
+    /**
+     * Load a grid from a file, either a tiled grid, a binary grid or a text
+     * matrix.
      *
      * @param fileName
-     * @param matrix
-     * @return int[][]
+     * @return ElevationGrid
+     * @throws IOException
      */
-    public static int[][] fill(String fileName, int[][] matrix) {
-        try {
-            Scanner file = new Scanner(new File(fileName));
+    public static ElevationGrid load(String fileName) throws IOException {
+        try (Stage stage = Metrics.start("load")) {
+            ElevationGrid grid = read(fileName);
+
+            stage.setCells((long) grid.getRows() * grid.getCols());
+
+            return grid;
+        }
+    }
+
+    /**
+     * Read a grid from a binary, tiled or text matrix file.
+     *
+     * @param fileName
+     * @return ElevationGrid
+     * @throws IOException
+     */
+    private static ElevationGrid read(String fileName) throws IOException {
+        if (TiledGrid.isTiled(fileName)) {
+            return new TiledGrid(fileName);
+        }
+
+        if (BinaryGrid.isBinary(fileName)) {
+            return new BinaryGrid(fileName);
+        }
+
+        int[] dimensions = parseDimensions(fileName);
 
-            for (int i = 0; i < matrix.length; i++) {
-                for (int j = 0; j < matrix[i].length; j++) {
-                    matrix[i][j] = file.hasNextInt() ? file.nextInt() : 0;
+        return fill(fileName, dimensions[0], dimensions[1]);
+    }
+
+    /**
+     * Fill a grid of integers from the contents of a text file.
+     *
+     * Values are packed into 16 bits for as long as they fit, widening to 32
+     * bits only if a larger value is found. Values missing from the end of a
+     * truncated file are left as zero, as is everything from the first value
+     * that is not an integer onwards.
+     *
+     * @param fileName
+     * @param rows
+     * @param cols
+     * @return ElevationGrid
+     * @throws IllegalArgumentException
+     */
+    public static ElevationGrid fill(String fileName, int rows, int cols) {
+        if ((long) rows * cols > MAX_CELLS) {
+            throw new IllegalArgumentException(String.format(
+                    "The grid is too large to load: %s. Convert it to a tiled grid instead.", fileName));
+        }
+
+        int length = rows * cols;
+        short[] shorts = new short[length];
+        int[] ints = null;
+
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        int filled = 0;
+
+        try (DataReader file = new DataReader(fileName)) {
+            for (; filled < length; filled++) {
+                int value = file.hasNextInt() ? file.nextInt() : 0;
+
+                // Widen the grid once a value no longer fits in 16 bits.
+                if (ints == null && value != (short) value) {
+                    ints = new int[length];
+
+                    for (int i = 0; i < filled; i++) {
+                        ints[i] = shorts[i];
+                    }
+
+                    shorts = null;
                 }
-            }
 
-            file.close();
+                if (ints == null) {
+                    shorts[filled] = (short) value;
+                } else {
+                    ints[filled] = value;
+                }
+
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
         } catch (IOException e) {
             Console.out(String.format("There was a problem opening or reading the file: %s", fileName));
         } catch (Exception e) {
             Console.out("Unable to parse values from file. Please make sure the data is intact.");
         }
 
-        return matrix;
+        // Account for any values left as zero.
+        if (filled < length) {
+            min = Math.min(min, 0);
+            max = Math.max(max, 0);
+        }
+
+        if (ints == null) {
+            return new ShortGrid(rows, cols, min, max, shorts);
+        }
+
+        return new IntGrid(rows, cols, min, max, ints);
     }
 
     /**
-     * Find the maximum value in a given matrix.
+     * Parse the dimensions from a given filename of the form "Name_WxH.ext".
      *
-     * @param matrix
+     * @param fileName
+     * @return int[]
+     * @throws IllegalArgumentException
+     */
+    public static int[] parseDimensions(String fileName) {
+        int underscore = fileName.lastIndexOf("_");
+        int delimiter = fileName.lastIndexOf("x");
+        int extension = fileName.lastIndexOf(".");
+
+        try {
+            int cols = Integer.parseInt(fileName.substring(underscore + 1, delimiter));
+            int rows = Integer.parseInt(fileName.substring(delimiter + 1, extension));
+
+            return new int[] { rows, cols };
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Unable to parse values from file. Please make sure the data is intact.");
+        }
+    }
+
+    /**
+     * Find the maximum value in a given grid.
+     *
+     * @param grid
      * @return int
      */
-    public static int findMax(int[][] matrix) {
-        return findExtreme(matrix, ExtremeMode.MAX);
+    public static int findMax(ElevationGrid grid) {
+        return grid.getStatistics().getMax();
     }
 
     /**
-     * Find the minimum value in a given matrix.
+     * Find the minimum value in a given grid.
      *
-     * @param matrix
+     * @param grid
      * @return int
      */
-    public static int findMin(int[][] matrix) {
-        return findExtreme(matrix, ExtremeMode.MIN);
+    public static int findMin(ElevationGrid grid) {
+        return grid.getStatistics().getMin();
     }
 
     /**
@@ -75,23 +184,23 @@ public class Matrix {
     }
 
     /**
-     * Find the index of the maximum value in a given matrix.
+     * Find the index of the maximum value in a given grid.
      *
-     * @param matrix
+     * @param grid
      * @return int[]
      */
-    public static int[] findMaxIndex(int[][] matrix) {
-        return findExtremeIndex(matrix, ExtremeMode.MAX);
+    public static int[] findMaxIndex(ElevationGrid grid) {
+        return grid.getStatistics().getMaxIndex();
     }
 
     /**
-     * Find the index of the minimum value in a given matrix.
+     * Find the index of the minimum value in a given grid.
      *
-     * @param matrix
+     * @param grid
      * @return int[]
      */
-    public static int[] findMinIndex(int[][] matrix) {
-        return findExtremeIndex(matrix, ExtremeMode.MIN);
+    public static int[] findMinIndex(ElevationGrid grid) {
+        return grid.getStatistics().getMinIndex();
     }
 
     /**
@@ -114,23 +223,6 @@ public class Matrix {
         return findExtremeIndexOfArray(array, ExtremeMode.MIN);
     }
 
-    /**
-     * Find the extreme value in a given matrix.
-     *
-     * @param matrix
-     * @param mode
-     * @return int
-     */
-    private static int findExtreme(int[][] matrix, ExtremeMode mode) {
-        int extreme = matrix[0][0];
-
-        for (int i = 0; i < matrix.length; i++) {
-            extreme = Extreme.find(findExtremeOfArray(matrix[i], mode), extreme, mode);
-        }
-
-        return extreme;
-    }
-
     /**
      * Find the extreme value in a given array.
      *
@@ -148,32 +240,6 @@ public class Matrix {
         return extreme;
     }
 
-    /**
-     * Find the compound index of the extreme value in a given matrix.
-     *
-     * @param array
-     * @param mode
-     * @return int[]
-     */
-    private static int[] findExtremeIndex(int[][] matrix, ExtremeMode mode) {
-        int extremeRow = 0;
-        int extremeCol = 0;
-        int extremeValue = matrix[extremeRow][extremeCol];
-
-        for (int i = 0; i < matrix.length; i++) {
-            int newExtreme = Extreme.find(findExtremeOfArray(matrix[i], mode), extremeValue, mode);
-
-            if (newExtreme != extremeValue) {
-                extremeRow = i;
-                extremeCol = findExtremeIndexOfArray(matrix[i], mode);
-            }
-
-            extremeValue = newExtreme;
-        }
-
-        return new int[] { extremeRow, extremeCol };
-    }
-
     /**
      * Find the index of the extreme value in a given array.
      *
@@ -0,0 +1,177 @@
+import java.util.Map;
+import java.util.Locale;
+import java.util.LinkedHashMap;
+
+/**
+ * Metrics class.
+ *
+ * A registry of the stages of work done so far, in the order they first ran.
+ * For each stage it keeps the number of runs, the total and longest time,
+ * the cells and paths covered and the bytes allocated, from which the rates
+ * are worked out. Frames painted in the window are a stage of their own.
+ */
+public class Metrics {
+
+    /**
+     * Define the positions of the totals kept for each stage.
+     */
+    private static final int RUNS = 0;
+
+    private static final int NANOS = 1;
+
+    private static final int MAX_NANOS = 2;
+
+    private static final int CELLS = 3;
+
+    private static final int PATHS = 4;
+
+    private static final int BYTES = 5;
+
+    /**
+     * The totals of each stage, by name.
+     */
+    private static Map<String, long[]> stages = new LinkedHashMap<>();
+
+    /**
+     * Whether runs of stages are added to the totals.
+     */
+    private static volatile boolean enabled;
+
+    /**
+     * Set whether runs of stages are added to the totals. Until then, stages
+     * are only measured for a Flight Recorder recording, if one is running.
+     *
+     * @param enabled
+     * @return void
+     */
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+    /**
+     * Check whether runs of stages are added to the totals.
+     *
+     * @return boolean
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Start measuring a run of a given stage.
+     *
+     * @param name
+     * @return Stage
+     */
+    public static Stage start(String name) {
+        return new Stage(name);
+    }
+
+    /**
+     * Add a run of a given stage to its totals.
+     *
+     * @param name
+     * @param nanos
+     * @param cells
+     * @param paths
+     * @param bytes
+     * @return void
+     */
+    public static synchronized void record(String name, long nanos, long cells, long paths, long bytes) {
+        long[] totals = stages.computeIfAbsent(name, key -> new long[BYTES + 1]);
+
+        totals[RUNS]++;
+        totals[NANOS] += nanos;
+        totals[MAX_NANOS] = Math.max(totals[MAX_NANOS], nanos);
+        totals[CELLS] += cells;
+        totals[PATHS] += paths;
+        totals[BYTES] += bytes;
+    }
+
+    /**
+     * Describe the totals of every stage as a table.
+     *
+     * @return String
+     */
+    public static synchronized String summarize() {
+        StringBuilder table = new StringBuilder(String.format("%n%-12s %6s %12s %12s %14s %14s %14s%n", "Stage",
+                "Runs", "Total (ms)", "Max (ms)", "Cells/s", "Paths/s", "Allocated (MB)"));
+
+        for (Map.Entry<String, long[]> stage : stages.entrySet()) {
+            long[] totals = stage.getValue();
+
+            table.append(String.format(Locale.ROOT, "%-12s %6d %12.1f %12.1f %14s %14s %14.1f%n", stage.getKey(),
+                    totals[RUNS], totals[NANOS] / 1e6, totals[MAX_NANOS] / 1e6,
+                    formatRate(totals[CELLS], totals[NANOS]), formatRate(totals[PATHS], totals[NANOS]),
+                    totals[BYTES] / (double) (1 << 20)));
+        }
+
+        return table.toString();
+    }
+
+    /**
+     * Describe the totals of every stage as a line of JSON.
+     *
+     * @return String
+     */
+    public static synchronized String dump() {
+        StringBuilder json = new StringBuilder("{\"stages\":[");
+
+        for (Map.Entry<String, long[]> stage : stages.entrySet()) {
+            long[] totals = stage.getValue();
+
+            if (json.charAt(json.length() - 1) != '[') {
+                json.append(',');
+            }
+
+            json.append(String.format(Locale.ROOT, "{\"name\":\"%s\",\"runs\":%d,\"nanos\":%d,\"maxNanos\":%d,"
+                    + "\"cells\":%d,\"cellsPerSecond\":%.1f,\"paths\":%d,\"pathsPerSecond\":%.1f,"
+                    + "\"allocatedBytes\":%d}", stage.getKey(), totals[RUNS], totals[NANOS], totals[MAX_NANOS],
+                    totals[CELLS], rate(totals[CELLS], totals[NANOS]), totals[PATHS],
+                    rate(totals[PATHS], totals[NANOS]), totals[BYTES]));
+        }
+
+        return json.append("]}").toString();
+    }
+
+    /**
+     * Calculate a rate per second, given a count and a time in nanoseconds.
+     *
+     * @param count
+     * @param nanos
+     * @return double
+     */
+    private static double rate(long count, long nanos) {
+        return nanos > 0 ? count * 1e9 / nanos : 0;
+    }
+
+    /**
+     * Format a rate per second with a metric suffix, or a dash if there was
+     * nothing to count.
+     *
+     * @param count
+     * @param nanos
+     * @return String
+     */
+    private static String formatRate(long count, long nanos) {
+        double rate = rate(count, nanos);
+
+        if (count == 0) {
+            return "-";
+        }
+
+        if (rate >= 1e9) {
+            return String.format(Locale.ROOT, "%.2fG", rate / 1e9);
+        }
+
+        if (rate >= 1e6) {
+            return String.format(Locale.ROOT, "%.2fM", rate / 1e6);
+        }
+
+        if (rate >= 1e3) {
+            return String.format(Locale.ROOT, "%.2fk", rate / 1e3);
+        }
+
+        return String.format(Locale.ROOT, "%.1f", rate);
+    }
+}
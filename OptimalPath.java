@@ -0,0 +1,141 @@
+/**
+ * OptimalPath class.
+ *
+ * Finds the route from the first column of a grid to the last with the exact
+ * least (or greatest) total elevation change, using the same up, forward and
+ * down moves as the greedy walker. A dynamic-programming sweep visits each
+ * column once, keeping only two columns of running totals plus two bits per
+ * cell recording which neighbour each cell was best reached from. The bits of
+ * each row start on a byte of their own, so threads working on separate rows
+ * never write to the same byte.
+ */
+public class OptimalPath {
+
+    /**
+     * The minimum number of rows before a column is split across threads.
+     */
+    private static final int PARALLEL_ROWS = 4096;
+
+    /**
+     * Find the optimal route across a given grid.
+     *
+     * Ties prefer the forward move, then the move from above, then the move
+     * from below, and the lowest row among equally good ends. The sources take
+     * a quarter of a byte per cell, so grids kept on disk are refused.
+     *
+     * @param grid
+     * @param mode
+     * @return Route
+     */
+    public static Route find(ElevationGrid grid, ExtremeMode mode) {
+        if (grid.isOutOfCore()) {
+            throw new IllegalArgumentException("Optimal paths are not available for tiled grids.");
+        }
+
+        int rows = grid.getRows();
+        int steps = grid.getCols() - 1;
+
+        // Compare by the negated total when maximizing, so both modes minimize.
+        int sign = mode == ExtremeMode.MIN ? 1 : -1;
+
+        int[] costs = new int[rows];
+        int[] next = new int[rows];
+        int stride = stride(steps);
+        byte[] from = new byte[(int) ((long) rows * stride / 4)];
+
+        for (int col = 0; col < steps; col++) {
+            int c = col;
+            int[] current = costs;
+            int[] following = next;
+
+            if (rows >= PARALLEL_ROWS) {
+                Parallel.forEach(rows, (start, end) -> relax(grid, c, start, end, sign, current, following, from));
+            } else {
+                relax(grid, c, 0, rows, sign, current, following, from);
+            }
+
+            costs = next;
+            next = current;
+        }
+
+        // Find the best end, then follow the moves back to the start.
+        int row = Matrix.findMinIndexOfArray(costs);
+        int total = sign * costs[row];
+        byte[] moves = new byte[steps];
+
+        for (int col = steps - 1; col >= 0; col--) {
+            long index = (long) row * stride + col;
+            int move = ((from[(int) (index >> 2)] >> ((index & 3) * 2)) & 3) - 1;
+
+            moves[col] = (byte) -move;
+            row += move;
+        }
+
+        return new Route(row, moves, total);
+    }
+
+    /**
+     * Get the number of two-bit sources kept for each row, which is the number
+     * of steps rounded up to a whole number of bytes.
+     *
+     * @param steps
+     * @return int
+     */
+    private static int stride(int steps) {
+        return (steps + 3) & ~3;
+    }
+
+    /**
+     * Compute the best running totals of a band of rows in the column after a
+     * given one, recording where each was reached from.
+     *
+     * @param grid
+     * @param col
+     * @param start
+     * @param end
+     * @param sign
+     * @param current
+     * @param following
+     * @param from
+     * @return void
+     */
+    private static void relax(ElevationGrid grid, int col, int start, int end, int sign, int[] current,
+            int[] following, byte[] from) {
+        int rows = grid.getRows();
+        int stride = stride(grid.getCols() - 1);
+
+        for (int row = start; row < end; row++) {
+            int target = grid.get(row, col + 1);
+
+            // Reach this cell from the same row by default.
+            int best = current[row] + sign * Math.abs(grid.get(row, col) - target);
+            int move = 0;
+
+            if (row > 0) {
+                int cost = current[row - 1] + sign * Math.abs(grid.get(row - 1, col) - target);
+
+                if (cost < best) {
+                    best = cost;
+                    move = -1;
+                }
+            }
+
+            if (row < rows - 1) {
+                int cost = current[row + 1] + sign * Math.abs(grid.get(row + 1, col) - target);
+
+                if (cost < best) {
+                    best = cost;
+                    move = 1;
+                }
+            }
+
+            following[row] = best;
+
+            // Pack the source of the cell into two bits. Each row starts on a
+            // byte of its own, so bands of rows never share one.
+            long index = (long) row * stride + col;
+
+            from[(int) (index >> 2)] |= (move + 1) << ((index & 3) * 2);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+import java.util.Map;
+import java.util.Set;
+import java.util.List;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.ArrayList;
+
+/**
+ * Options class.
+ *
+ * Sorts command-line arguments into files, flags and options with values.
+ */
+public class Options {
+
+    /**
+     * The options that take a value from the following argument.
+     */
+    private static final Set<String> VALUE_OPTIONS = Set.of("--threads", "--seed", "--format", "--output", "--from",
+            "--to", "--memory", "--metrics-output", "--ensemble",
+            "--cell-size", "--layer", "--port", "--cache", "--jobs", "--resident");
+
+    /**
+     * The files, in the order given.
+     */
+    private List<String> files = new ArrayList<>();
+
+    /**
+     * The flags that were set.
+     */
+    private Set<String> flags = new HashSet<>();
+
+    /**
+     * The values of the options that were set.
+     */
+    private Map<String, String> values = new HashMap<>();
+
+    /**
+     * Options class constructor.
+     *
+     * @param args
+     * @return self
+     */
+    public Options(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (VALUE_OPTIONS.contains(args[i]) && i + 1 < args.length) {
+                values.put(args[i], args[++i]);
+            } else if (args[i].startsWith("--")) {
+                flags.add(args[i]);
+            } else {
+                files.add(args[i]);
+            }
+        }
+    }
+
+    /**
+     * Check whether a given flag was set.
+     *
+     * @param flag
+     * @return boolean
+     */
+    public boolean has(String flag) {
+        return flags.contains(flag);
+    }
+
+    /**
+     * Get the value of a given option, or a fallback if it was not set.
+     *
+     * @param option
+     * @param fallback
+     * @return String
+     */
+    public String get(String option, String fallback) {
+        return values.getOrDefault(option, fallback);
+    }
+
+    /**
+     * Get the files.
+     *
+     * @return List<String>
+     */
+    public List<String> getFiles() {
+        return files;
+    }
+}
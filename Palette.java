@@ -0,0 +1,98 @@
+import java.awt.Color;
+
+/**
+ * Palette class.
+ *
+ * A lookup table of packed ARGB colors for every elevation in a range, built
+ * once from a gradient of color stops so that coloring a value is a single
+ * array load.
+ */
+public class Palette {
+
+    /**
+     * The maximum number of entries in the lookup table.
+     */
+    private static final int MAX_ENTRIES = 1 << 20;
+
+    /**
+     * The lowest elevation in the table.
+     */
+    private int min;
+
+    /**
+     * The base-2 logarithm of the number of elevations sharing each entry.
+     */
+    private int shift = 0;
+
+    /**
+     * The packed ARGB color of each entry.
+     */
+    private int[] table;
+
+    /**
+     * Palette class constructor.
+     *
+     * The stops are the positions of the colors along the range, from 0 at the
+     * minimum elevation to 1 at the maximum, in ascending order. Elevations
+     * between two stops blend between their colors.
+     *
+     * @param min
+     * @param max
+     * @param stops
+     * @param colors
+     * @return self
+     */
+    public Palette(int min, int max, float[] stops, Color[] colors) {
+        if (stops.length < 2 || stops.length != colors.length) {
+            throw new IllegalArgumentException("A gradient needs a color for each of at least two stops.");
+        }
+
+        this.min = min;
+
+        while (((long) max - min) >> shift >= MAX_ENTRIES) {
+            shift++;
+        }
+
+        table = new int[(int) (((long) max - min) >> shift) + 1];
+
+        long range = (long) max - min;
+
+        for (int i = 0; i < table.length; i++) {
+            long value = (long) i << shift;
+            float ratio = range == 0 ? 0 : (float) value / range;
+
+            // Find the last stop at or below the ratio.
+            int stop = 0;
+
+            while (stop < stops.length - 2 && ratio >= stops[stop + 1]) {
+                stop++;
+            }
+
+            float blend = (ratio - stops[stop]) * (1f / (stops[stop + 1] - stops[stop]));
+
+            table[i] = Colors.interpolateColor(colors[stop], colors[stop + 1], blend).getRGB();
+        }
+    }
+
+    /**
+     * Create the standard low, middle and high elevation palette for a range.
+     *
+     * @param min
+     * @param max
+     * @return Palette
+     */
+    public static Palette standard(int min, int max) {
+        return new Palette(min, max, new float[] { 0f, 0.5f, 1f },
+                new Color[] { Colors.lowElevation, Colors.midElevation, Colors.highElevation });
+    }
+
+    /**
+     * Get the packed ARGB color of a given elevation.
+     *
+     * @param value
+     * @return int
+     */
+    public int getColor(int value) {
+        return table[(value - min) >>> shift];
+    }
+}
@@ -0,0 +1,164 @@
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.stream.IntStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ExecutorService;
+import java.util.function.BinaryOperator;
+
+/**
+ * Parallel class.
+ *
+ * Splits work over a range of indices (usually the rows of a grid) into
+ * contiguous chunks and runs them on a shared fork/join pool. Chunks are
+ * always combined in index order, so results are identical to running the
+ * same work sequentially.
+ */
+public class Parallel {
+
+    /**
+     * The number of chunks to create per worker thread, for load balancing.
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /**
+     * The number of worker threads.
+     */
+    private static int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The fork/join pool, created on first use.
+     */
+    private static ForkJoinPool pool;
+
+    /**
+     * Set the number of worker threads. A value of 1 runs all work sequentially
+     * on the calling thread.
+     *
+     * @param threads
+     * @return void
+     */
+    public static synchronized void setParallelism(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1.");
+        }
+
+        if (pool != null && threads != parallelism) {
+            pool.shutdown();
+            pool = null;
+        }
+
+        parallelism = threads;
+    }
+
+    /**
+     * Get the number of worker threads.
+     *
+     * @return int
+     */
+    public static synchronized int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Get the fork/join pool.
+     *
+     * @return ForkJoinPool
+     */
+    public static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism);
+        }
+
+        return pool;
+    }
+
+    /**
+     * Create an executor for tasks that mostly wait, such as reading files or
+     * answering requests, which runs each task on a thread of its own.
+     *
+     * Where the runtime has virtual threads (Java 21 and later) each task gets
+     * a virtual thread; otherwise a cached pool of daemon threads is used. The
+     * virtual thread executor is looked up by name so that the program still
+     * builds and runs on Java 17.
+     *
+     * @return ExecutorService
+     */
+    public static ExecutorService newVirtualExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task);
+
+                thread.setDaemon(true);
+
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Compute a result for each chunk of the range [0, size) and combine the
+     * results in order.
+     *
+     * @param size
+     * @param task
+     * @param combine
+     * @return T
+     */
+    public static <T> T reduce(int size, BiFunction<Integer, Integer, T> task, BinaryOperator<T> combine) {
+        int chunks = chunks(size);
+
+        if (chunks <= 1) {
+            return task.apply(0, size);
+        }
+
+        return getPool().submit(() -> IntStream.range(0, chunks).parallel()
+                .mapToObj(i -> task.apply(bound(i, chunks, size), bound(i + 1, chunks, size)))
+                .reduce(combine).get()).join();
+    }
+
+    /**
+     * Run a task over each chunk of the range [0, size).
+     *
+     * @param size
+     * @param task
+     * @return void
+     */
+    public static void forEach(int size, BiConsumer<Integer, Integer> task) {
+        int chunks = chunks(size);
+
+        if (chunks <= 1) {
+            task.accept(0, size);
+            return;
+        }
+
+        getPool().submit(() -> IntStream.range(0, chunks).parallel()
+                .forEach(i -> task.accept(bound(i, chunks, size), bound(i + 1, chunks, size)))).join();
+    }
+
+    /**
+     * Calculate the number of chunks to split a range into.
+     *
+     * @param size
+     * @return int
+     */
+    private static int chunks(int size) {
+        int threads = getParallelism();
+
+        return threads == 1 ? 1 : Math.max(1, Math.min(size, threads * CHUNKS_PER_THREAD));
+    }
+
+    /**
+     * Calculate the starting index of a given chunk.
+     *
+     * @param chunk
+     * @param chunks
+     * @param size
+     * @return int
+     */
+    private static int bound(int chunk, int chunks, int size) {
+        return (int) ((long) chunk * size / chunks);
+    }
+}
@@ -0,0 +1,179 @@
+import java.util.Arrays;
+
+/**
+ * PathStore class.
+ *
+ * The results of walking a path from every row of a grid: the total elevation
+ * change of each path, and the row movement (-1, 0 or 1) of each of its steps
+ * packed into a single byte array. Paths are only walked once, and can then be
+ * drawn any number of times from the stored steps.
+ *
+ * For grids kept on disk, or too large for a byte per cell, only the totals
+ * are stored, and a path is walked again whenever its steps are needed.
+ */
+public class PathStore {
+
+    /**
+     * The most steps stored for the paths of a grid.
+     */
+    private static final long MAX_MOVES = 1L << 28;
+
+    /**
+     * The walker that produced the paths, if they are walked again on demand.
+     */
+    private Walker walker;
+
+    /**
+     * The grid the paths were walked over.
+     */
+    private ElevationGrid grid;
+
+    /**
+     * Whether the paths were walked with the "middle-priority" rule disabled.
+     */
+    private boolean disableMiddlePriority;
+
+    /**
+     * The number of rows in the grid.
+     */
+    private int rows;
+
+    /**
+     * The number of steps in each path.
+     */
+    private int steps;
+
+    /**
+     * The total elevation change of the path starting from each row.
+     */
+    private int[] totals;
+
+    /**
+     * The row movements of every path, one path after another.
+     */
+    private byte[] moves;
+
+    /**
+     * The starting row of the path with the least total elevation change.
+     */
+    private int best;
+
+    /**
+     * The starting row of the path with the greatest total elevation change.
+     */
+    private int worst;
+
+    /**
+     * PathStore class constructor.
+     *
+     * @param walker
+     * @return self
+     */
+    public PathStore(Walker walker) {
+        this.grid = walker.getGrid();
+        this.disableMiddlePriority = walker.isMiddlePriorityDisabled();
+        this.rows = grid.getRows();
+        this.steps = grid.getCols() - 1;
+
+        if (grid.isOutOfCore() || (long) rows * steps > MAX_MOVES) {
+            this.walker = walker;
+            totals = walker.walkAll();
+        } else {
+            moves = new byte[rows * steps];
+            totals = walker.walkAll(moves);
+        }
+
+        best = Matrix.findMinIndexOfArray(totals);
+        worst = Matrix.findMaxIndexOfArray(totals);
+    }
+
+    /**
+     * Check whether the paths were walked over a given grid in a given mode.
+     *
+     * @param grid
+     * @param disableMiddlePriority
+     * @return boolean
+     */
+    public boolean isFor(ElevationGrid grid, boolean disableMiddlePriority) {
+        return this.grid == grid && this.disableMiddlePriority == disableMiddlePriority;
+    }
+
+    /**
+     * Get the number of bytes taken by the totals and moves of the paths.
+     *
+     * @return long
+     */
+    public long getMemoryUsage() {
+        return (long) totals.length * Integer.BYTES + (moves != null ? moves.length : 0);
+    }
+
+    /**
+     * Get the total elevation change of the path starting from a given row.
+     *
+     * @param row
+     * @return int
+     */
+    public int getTotal(int row) {
+        return totals[row];
+    }
+
+    /**
+     * Get the starting row of the path with the least total elevation change.
+     *
+     * @return int
+     */
+    public int getBest() {
+        return best;
+    }
+
+    /**
+     * Get the starting row of the path with the greatest total elevation change.
+     *
+     * @return int
+     */
+    public int getWorst() {
+        return worst;
+    }
+
+    /**
+     * Get the path starting from a given row as a route of its own.
+     *
+     * @param row
+     * @return Route
+     */
+    public Route getRoute(int row) {
+        if (moves == null) {
+            byte[] path = new byte[steps];
+
+            walker.walk(row, path, 0);
+
+            return new Route(row, path, totals[row]);
+        }
+
+        return new Route(row, Arrays.copyOfRange(moves, row * steps, (row + 1) * steps), totals[row]);
+    }
+
+    /**
+     * Fill in the row of the path starting from a given row in each column.
+     *
+     * @param row
+     * @param positions
+     * @return int[]
+     */
+    public int[] getPositions(int row, int[] positions) {
+        if (moves == null) {
+            return getRoute(row).getPositions(positions);
+        }
+
+        int offset = row * steps;
+
+        positions[0] = row;
+
+        for (int i = 0; i < steps; i++) {
+            row += moves[offset + i];
+            positions[i + 1] = row;
+        }
+
+        return positions;
+    }
+}
@@ -0,0 +1,229 @@
+import java.util.List;
+import java.io.IOException;
+import javax.swing.SwingWorker;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Pipeline class.
+ *
+ * Loads a grid and computes everything drawn for it on a background thread,
+ * one stage at a time, so the window stays responsive throughout. The scene
+ * is handed to the window as soon as its map can be drawn, and the paths are
+ * then drawn over it in batches, so the view fills in as the work completes.
+ *
+ * Cancelling stops the pipeline at the end of the current stage or batch, and
+ * leaves whatever was already drawn in the window.
+ */
+public class Pipeline extends SwingWorker<Scene, String> {
+
+    /**
+     * The number of batches the paths are drawn in.
+     */
+    private static final int BATCHES = 16;
+
+    /**
+     * The window to show the results in.
+     */
+    private Render render;
+
+    /**
+     * The file to load.
+     */
+    private String file;
+
+    /**
+     * Whether the "--disable-middle-priority" command-line switch is set.
+     */
+    private boolean flag;
+
+    /**
+     * Whether the best and worst paths are the exact optima.
+     */
+    private boolean optimal;
+
+    /**
+     * The random seed for the path walker.
+     */
+    private long seed;
+
+    /**
+     * The endpoints of the point-to-point route, or null if there is none.
+     */
+    private int[] trail;
+
+    /**
+     * Whether the paths are drawn as a heat layer.
+     */
+    private boolean heat;
+
+    /**
+     * The layer the map is drawn from.
+     */
+    private int layer;
+
+    /**
+     * The scene being computed, once its map can be drawn.
+     */
+    private volatile Scene scene;
+
+    /**
+     * The index of regional extremes, once it is built.
+     */
+    private volatile RangeIndex index;
+
+    /**
+     * Pipeline class constructor.
+     *
+     * @param render
+     * @param file
+     * @param flag
+     * @param optimal
+     * @param seed
+     * @param trail
+     * @param heat
+     * @param layer
+     * @return self
+     */
+    public Pipeline(Render render, String file, boolean flag, boolean optimal, long seed, int[] trail,
+            boolean heat, int layer) {
+        this.render = render;
+        this.file = file;
+        this.flag = flag;
+        this.optimal = optimal;
+        this.seed = seed;
+        this.trail = trail;
+        this.heat = heat;
+        this.layer = layer;
+    }
+
+    /**
+     * Run every stage on the background thread.
+     *
+     * @return Scene
+     * @throws IOException
+     */
+    @Override
+    protected Scene doInBackground() throws IOException {
+        publish("Loading " + file);
+        ElevationGrid grid = Matrix.load(file);
+
+        if (isCancelled()) {
+            return null;
+        }
+
+        publish("Computing statistics");
+        grid.getStatistics();
+
+        if (isCancelled()) {
+            return null;
+        }
+
+        // Hand the scene over as soon as its map can be drawn.
+        publish("Building map levels");
+        Scene scene = new Scene(grid, flag, optimal, seed);
+
+        if (trail != null) {
+            scene.setTrail(trail);
+        }
+
+        scene.setHeat(heat, null);
+        scene.setLayer(layer);
+        scene.getPyramid();
+        this.scene = scene;
+
+        if (isCancelled()) {
+            return null;
+        }
+
+        publish("Indexing regional extremes");
+        index = scene.getRangeIndex();
+
+        if (isCancelled()) {
+            return null;
+        }
+
+        // Shade the terrain, so that the view can switch to any layer at once.
+        // Tiled grids are only drawn from their elevations.
+        if (!grid.isOutOfCore()) {
+            publish("Shading terrain");
+            scene.getStencil();
+
+            if (isCancelled()) {
+                return null;
+            }
+        }
+
+        publish("Walking paths");
+        scene.getBest();
+        scene.getWorst();
+
+        if (isCancelled()) {
+            return null;
+        }
+
+        if (trail != null) {
+            publish("Finding route");
+            scene.getTrail();
+
+            if (isCancelled()) {
+                return null;
+            }
+        }
+
+        // Tiled grids are too large to draw the paths over in one image.
+        if (grid.isOutOfCore()) {
+            return scene;
+        }
+
+        // Draw the paths in batches, showing each batch as it is done.
+        publish("Drawing paths");
+        int rows = grid.getRows();
+
+        scene.getOverlay((rows + BATCHES - 1) / BATCHES, drawn -> {
+            setProgress((int) (100L * drawn / rows));
+
+            return !isCancelled();
+        });
+
+        return scene;
+    }
+
+    /**
+     * Show the stages that have started, on the event dispatch thread.
+     *
+     * @param stages
+     * @return void
+     */
+    @Override
+    protected void process(List<String> stages) {
+        render.showStage(stages.get(stages.size() - 1), scene, index);
+    }
+
+    /**
+     * Show the results, or report why there are none, on the event dispatch
+     * thread.
+     *
+     * @return void
+     */
+    @Override
+    protected void done() {
+        try {
+            render.showResults(get());
+        } catch (CancellationException e) {
+            render.showCancelled(scene, index);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                Console.out(String.format("There was a problem opening or reading the file: %s", file));
+            } else if (e.getCause() instanceof IllegalArgumentException) {
+                Console.out(e.getCause().getMessage());
+            } else {
+                throw new IllegalStateException(e.getCause());
+            }
+
+            System.exit(-1);
+        }
+    }
+}
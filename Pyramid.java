@@ -0,0 +1,298 @@
+import java.util.Arrays;
+
+/**
+ * Pyramid class.
+ *
+ * Downsampled copies of a grid for drawing it at any zoom level. Each level
+ * halves the rows and columns of the one before it, and each of its cells
+ * holds the lowest, highest and mean value of the 2^level by 2^level block of
+ * the grid below it, so a zoomed-out view only reads one cell per pixel.
+ *
+ * Level 0 is the grid itself. The levels are stored from the finest one that
+ * fits within a memory budget; any finer level is sampled straight from the
+ * grid instead, taking the first cell of each block for all three values.
+ */
+public class Pyramid {
+
+    /**
+     * Define the values kept for each cell of a level.
+     */
+    public static final int MEAN = 0;
+
+    public static final int MIN = 1;
+
+    public static final int MAX = 2;
+
+    /**
+     * The bytes stored for each cell of a level: a min, a max and a mean.
+     */
+    private static final int CELL_BYTES = 12;
+
+    /**
+     * The elevation grid.
+     */
+    private ElevationGrid grid;
+
+    /**
+     * The number of rows and columns of each level.
+     */
+    private int[] levelRows;
+
+    private int[] levelCols;
+
+    /**
+     * The finest stored level.
+     */
+    private int first;
+
+    /**
+     * The lowest, highest and mean values of each stored level, in row-major
+     * order, or null for the levels that are not stored.
+     */
+    private int[][] mins;
+
+    private int[][] maxes;
+
+    private float[][] means;
+
+    /**
+     * Pyramid class constructor.
+     *
+     * @param grid
+     * @param budget
+     * @return self
+     */
+    public Pyramid(ElevationGrid grid, long budget) {
+        this.grid = grid;
+
+        // Halve the grid until a single cell is left.
+        int levels = 1;
+
+        while (Math.max(grid.getRows(), grid.getCols()) > 1L << (levels - 1)) {
+            levels++;
+        }
+
+        levelRows = new int[levels];
+        levelCols = new int[levels];
+
+        for (int i = 0; i < levels; i++) {
+            levelRows[i] = (int) ((grid.getRows() + (1L << i) - 1) >> i);
+            levelCols[i] = (int) ((grid.getCols() + (1L << i) - 1) >> i);
+        }
+
+        // Store as many of the finer levels as the budget allows.
+        first = levels;
+
+        for (long bytes = 0; first > 1; first--) {
+            bytes += (long) levelRows[first - 1] * levelCols[first - 1] * CELL_BYTES;
+
+            if (bytes > budget) {
+                break;
+            }
+        }
+
+        mins = new int[levels][];
+        maxes = new int[levels][];
+        means = new float[levels][];
+
+        if (first < levels) {
+            sampleGrid();
+        }
+
+        for (int i = first + 1; i < levels; i++) {
+            halve(i);
+        }
+    }
+
+    /**
+     * Get the number of levels.
+     *
+     * @return int
+     */
+    public int getLevels() {
+        return levelRows.length;
+    }
+
+    /**
+     * Get the number of bytes taken by the stored levels.
+     *
+     * @return long
+     */
+    public long getMemoryUsage() {
+        long bytes = 0;
+
+        for (int i = 0; i < mins.length; i++) {
+            if (mins[i] != null) {
+                bytes += (long) mins[i].length * (2 * Integer.BYTES + Float.BYTES);
+            }
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Get the number of rows of a given level.
+     *
+     * @param level
+     * @return int
+     */
+    public int getRows(int level) {
+        return levelRows[level];
+    }
+
+    /**
+     * Get the number of columns of a given level.
+     *
+     * @param level
+     * @return int
+     */
+    public int getCols(int level) {
+        return levelCols[level];
+    }
+
+    /**
+     * Get the lowest, highest or mean value of a cell of a given level.
+     *
+     * @param summary
+     * @param level
+     * @param row
+     * @param col
+     * @return int
+     */
+    public int get(int summary, int level, int row, int col) {
+        if (mins[level] == null) {
+            return grid.get(row << level, col << level);
+        }
+
+        int index = row * levelCols[level] + col;
+
+        if (summary == MIN) {
+            return mins[level][index];
+        }
+
+        if (summary == MAX) {
+            return maxes[level][index];
+        }
+
+        return Math.round(means[level][index]);
+    }
+
+    /**
+     * Build the finest stored level from the grid, one band of rows at a time.
+     *
+     * @return void
+     */
+    private void sampleGrid() {
+        int rows = levelRows[first];
+        int cols = levelCols[first];
+        int size = 1 << first;
+
+        allocate(first);
+
+        Parallel.forEach(rows, (from, to) -> {
+            int[] values = new int[grid.getCols()];
+            long[] sums = new long[cols];
+
+            for (int i = from; i < to; i++) {
+                int offset = i * cols;
+                int top = i << first;
+                int bottom = Math.min(top + size, grid.getRows());
+
+                Arrays.fill(mins[first], offset, offset + cols, Integer.MAX_VALUE);
+                Arrays.fill(maxes[first], offset, offset + cols, Integer.MIN_VALUE);
+                Arrays.fill(sums, 0);
+
+                // Fold each row of the block into the cells it falls in.
+                for (int row = top; row < bottom; row++) {
+                    grid.copyRow(row, values);
+
+                    for (int j = 0; j < values.length; j++) {
+                        int cell = offset + (j >> first);
+
+                        mins[first][cell] = Math.min(mins[first][cell], values[j]);
+                        maxes[first][cell] = Math.max(maxes[first][cell], values[j]);
+                        sums[j >> first] += values[j];
+                    }
+                }
+
+                for (int j = 0; j < cols; j++) {
+                    means[first][offset + j] = (float) ((double) sums[j] / area(first, i, j));
+                }
+            }
+        });
+    }
+
+    /**
+     * Build a level from the level before it, weighting each mean by the
+     * number of grid cells below it.
+     *
+     * @param level
+     * @return void
+     */
+    private void halve(int level) {
+        int rows = levelRows[level];
+        int cols = levelCols[level];
+        int below = level - 1;
+        int belowRows = levelRows[below];
+        int belowCols = levelCols[below];
+
+        allocate(level);
+
+        Parallel.forEach(rows, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                for (int j = 0; j < cols; j++) {
+                    int min = Integer.MAX_VALUE;
+                    int max = Integer.MIN_VALUE;
+                    double sum = 0;
+
+                    for (int row = i * 2; row < Math.min(i * 2 + 2, belowRows); row++) {
+                        for (int col = j * 2; col < Math.min(j * 2 + 2, belowCols); col++) {
+                            int index = row * belowCols + col;
+
+                            min = Math.min(min, mins[below][index]);
+                            max = Math.max(max, maxes[below][index]);
+                            sum += (double) means[below][index] * area(below, row, col);
+                        }
+                    }
+
+                    int index = i * cols + j;
+
+                    mins[level][index] = min;
+                    maxes[level][index] = max;
+                    means[level][index] = (float) (sum / area(level, i, j));
+                }
+            }
+        });
+    }
+
+    /**
+     * Allocate the arrays of a given level.
+     *
+     * @param level
+     * @return void
+     */
+    private void allocate(int level) {
+        int length = levelRows[level] * levelCols[level];
+
+        mins[level] = new int[length];
+        maxes[level] = new int[length];
+        means[level] = new float[length];
+    }
+
+    /**
+     * Count the grid cells below a cell of a given level, which is fewer than
+     * 4^level along the bottom and right edges.
+     *
+     * @param level
+     * @param row
+     * @param col
+     * @return long
+     */
+    private long area(int level, int row, int col) {
+        long size = 1L << level;
+        long height = Math.min(size, grid.getRows() - ((long) row << level));
+        long width = Math.min(size, grid.getCols() - ((long) col << level));
+
+        return height * width;
+    }
+}
@@ -0,0 +1,534 @@
+/**
+ * RangeIndex class.
+ *
+ * Answers "where is the highest (or lowest) point inside this rectangle" for
+ * any rectangle of a grid. The grid is cut into square blocks, and the extreme
+ * cells of every run of 2^i by 2^j blocks are precomputed (a 2D sparse table
+ * over the blocks). A query looks up the blocks it covers entirely in four
+ * table entries, and the partial blocks along its border one row or column
+ * segment at a time, so only the corners are scanned cell by cell.
+ *
+ * Larger blocks use less memory but leave more of the border to cover, so the
+ * block size sets the trade-off. Only a block size of 1 answers every query
+ * from the table alone, in constant time. With blocks of B cells a side, the
+ * border of an h by w rectangle has fewer than 2B rows and 2B columns, each
+ * costing up to 2B cells and a step per block it crosses, so a query takes
+ * O(B^2 + h + w) steps: neither constant nor logarithmic. withBudget() picks
+ * blocks larger than 1 for all but the smallest grids (2 for the bundled
+ * 844x480 grid, 32 for 5000x5000). Ties go to the first cell in row-major
+ * order, as in the statistics of the whole grid.
+ */
+public class RangeIndex {
+
+    /**
+     * The elevation grid.
+     */
+    private ElevationGrid grid;
+
+    /**
+     * The number of rows in the grid.
+     */
+    private int rows;
+
+    /**
+     * The number of columns in the grid.
+     */
+    private int cols;
+
+    /**
+     * The number of rows and columns in each block.
+     */
+    private int block;
+
+    /**
+     * The number of rows of blocks.
+     */
+    private int blockRows;
+
+    /**
+     * The number of columns of blocks.
+     */
+    private int blockCols;
+
+    /**
+     * The number of table levels along the rows and the columns of blocks.
+     */
+    private int levelRows;
+
+    private int levelCols;
+
+    /**
+     * The cells holding the lowest and highest value of every run of 2^i by 2^j
+     * blocks, as row * cols + col, with level (i, j) at index i * levelCols + j.
+     */
+    private int[][] mins;
+
+    private int[][] maxes;
+
+    /**
+     * The cells holding the lowest and highest value of every one-block-long
+     * segment of each row, at index row * blockCols + block column, and of
+     * each column, at index col * blockRows + block row. These let the border
+     * of a query skip whole blocks at a time.
+     */
+    private int[] rowMins;
+
+    private int[] rowMaxes;
+
+    private int[] colMins;
+
+    private int[] colMaxes;
+
+    /**
+     * RangeIndex class constructor.
+     *
+     * @param grid
+     * @param block
+     * @return self
+     */
+    public RangeIndex(ElevationGrid grid, int block) {
+        if (block < 1) {
+            throw new IllegalArgumentException("The block size must be a positive integer.");
+        }
+
+        this.grid = grid;
+        this.rows = grid.getRows();
+        this.cols = grid.getCols();
+        this.block = block;
+
+        blockRows = (rows + block - 1) / block;
+        blockCols = (cols + block - 1) / block;
+        levelRows = log2(blockRows) + 1;
+        levelCols = log2(blockCols) + 1;
+
+        mins = new int[levelRows * levelCols][];
+        maxes = new int[levelRows * levelCols][];
+
+        build();
+    }
+
+    /**
+     * Create an index for a given grid with the smallest power-of-two block
+     * size whose table fits in a given number of bytes.
+     *
+     * @param grid
+     * @param budget
+     * @return RangeIndex
+     */
+    public static RangeIndex withBudget(ElevationGrid grid, long budget) {
+        int block = 1;
+
+        while (block < Math.max(grid.getRows(), grid.getCols())
+                && getMemoryUsage(grid.getRows(), grid.getCols(), block) > budget) {
+            block *= 2;
+        }
+
+        return new RangeIndex(grid, block);
+    }
+
+    /**
+     * Get the number of bytes taken by the table of an index with a given block
+     * size over a grid of given dimensions.
+     *
+     * @param rows
+     * @param cols
+     * @param block
+     * @return long
+     */
+    public static long getMemoryUsage(int rows, int cols, int block) {
+        long blockRows = (rows + block - 1) / block;
+        long blockCols = (cols + block - 1) / block;
+        long entries = 0;
+
+        for (long i = 1; i <= blockRows; i *= 2) {
+            for (long j = 1; j <= blockCols; j *= 2) {
+                entries += (blockRows - i + 1) * (blockCols - j + 1);
+            }
+        }
+
+        // Add the segments of each row and column, if blocks are wider than a cell.
+        if (block > 1) {
+            entries += rows * blockCols + cols * blockRows;
+        }
+
+        // One cell each for the lowest and highest value.
+        return entries * 2 * Integer.BYTES;
+    }
+
+    /**
+     * Get the number of bytes taken by the table of the index.
+     *
+     * @return long
+     */
+    public long getMemoryUsage() {
+        return getMemoryUsage(rows, cols, block);
+    }
+
+    /**
+     * Get the number of rows and columns in each block.
+     *
+     * @return int
+     */
+    public int getBlockSize() {
+        return block;
+    }
+
+    /**
+     * Get the compound index of the lowest point inside a given rectangle,
+     * from its top-left to its bottom-right cell inclusive.
+     *
+     * @param top
+     * @param left
+     * @param bottom
+     * @param right
+     * @return int[]
+     */
+    public int[] getMinIndex(int top, int left, int bottom, int right) {
+        int cell = find(top, left, bottom, right, ExtremeMode.MIN);
+
+        return new int[] { cell / cols, cell % cols };
+    }
+
+    /**
+     * Get the compound index of the highest point inside a given rectangle,
+     * from its top-left to its bottom-right cell inclusive.
+     *
+     * @param top
+     * @param left
+     * @param bottom
+     * @param right
+     * @return int[]
+     */
+    public int[] getMaxIndex(int top, int left, int bottom, int right) {
+        int cell = find(top, left, bottom, right, ExtremeMode.MAX);
+
+        return new int[] { cell / cols, cell % cols };
+    }
+
+    /**
+     * Find the extreme cell inside a given rectangle.
+     *
+     * @param top
+     * @param left
+     * @param bottom
+     * @param right
+     * @param mode
+     * @return int
+     */
+    private int find(int top, int left, int bottom, int right, ExtremeMode mode) {
+        if (top < 0 || left < 0 || bottom >= rows || right >= cols || top > bottom || left > right) {
+            throw new IllegalArgumentException("The rectangle must be inside the grid.");
+        }
+
+        // Find the blocks lying entirely inside the rectangle.
+        int firstRow = (top + block - 1) / block;
+        int firstCol = (left + block - 1) / block;
+        int lastRow = bottom == rows - 1 ? blockRows - 1 : (bottom + 1) / block - 1;
+        int lastCol = right == cols - 1 ? blockCols - 1 : (right + 1) / block - 1;
+        int best = -1;
+
+        // Without any whole blocks, go along whichever side is shorter.
+        if (firstRow > lastRow || firstCol > lastCol) {
+            if (bottom - top <= right - left) {
+                for (int i = top; i <= bottom; i++) {
+                    best = alongRow(i, left, right, best, mode);
+                }
+            } else {
+                for (int j = left; j <= right; j++) {
+                    best = alongCol(j, top, bottom, best, mode);
+                }
+            }
+
+            return best;
+        }
+
+        // Cover the blocks with four (possibly overlapping) runs from the table.
+        int i = log2(lastRow - firstRow + 1);
+        int j = log2(lastCol - firstCol + 1);
+        int[] table = (mode == ExtremeMode.MIN ? mins : maxes)[i * levelCols + j];
+        int stride = blockCols - (1 << j) + 1;
+        int lowRow = lastRow - (1 << i) + 1;
+        int lowCol = lastCol - (1 << j) + 1;
+
+        best = pick(table[firstRow * stride + firstCol], table[firstRow * stride + lowCol], mode);
+        best = pick(best, table[lowRow * stride + firstCol], mode);
+        best = pick(best, table[lowRow * stride + lowCol], mode);
+
+        // Cover the partial blocks above and below them, then to either side.
+        int innerTop = firstRow * block;
+        int innerLeft = firstCol * block;
+        int innerBottom = Math.min((lastRow + 1) * block, rows) - 1;
+        int innerRight = Math.min((lastCol + 1) * block, cols) - 1;
+
+        for (int row = top; row < innerTop; row++) {
+            best = alongRow(row, left, right, best, mode);
+        }
+
+        for (int row = innerBottom + 1; row <= bottom; row++) {
+            best = alongRow(row, left, right, best, mode);
+        }
+
+        for (int col = left; col < innerLeft; col++) {
+            best = alongCol(col, innerTop, innerBottom, best, mode);
+        }
+
+        for (int col = innerRight + 1; col <= right; col++) {
+            best = alongCol(col, innerTop, innerBottom, best, mode);
+        }
+
+        return best;
+    }
+
+    /**
+     * Find a better extreme than a given cell (or -1) along part of a row, a
+     * segment at a time where segments fit.
+     *
+     * @param row
+     * @param left
+     * @param right
+     * @param best
+     * @param mode
+     * @return int
+     */
+    private int alongRow(int row, int left, int right, int best, ExtremeMode mode) {
+        int first = (left + block - 1) / block;
+        int last = right == cols - 1 ? blockCols - 1 : (right + 1) / block - 1;
+
+        if (block == 1 || first > last) {
+            return scan(row, left, row, right, best, mode);
+        }
+
+        int[] segments = mode == ExtremeMode.MIN ? rowMins : rowMaxes;
+
+        best = scan(row, left, row, first * block - 1, best, mode);
+
+        for (int i = first; i <= last; i++) {
+            best = best < 0 ? segments[row * blockCols + i] : pick(best, segments[row * blockCols + i], mode);
+        }
+
+        return scan(row, Math.min((last + 1) * block, cols), row, right, best, mode);
+    }
+
+    /**
+     * Find a better extreme than a given cell (or -1) along part of a column, a
+     * segment at a time where segments fit.
+     *
+     * @param col
+     * @param top
+     * @param bottom
+     * @param best
+     * @param mode
+     * @return int
+     */
+    private int alongCol(int col, int top, int bottom, int best, ExtremeMode mode) {
+        int first = (top + block - 1) / block;
+        int last = bottom == rows - 1 ? blockRows - 1 : (bottom + 1) / block - 1;
+
+        if (block == 1 || first > last) {
+            return scan(top, col, bottom, col, best, mode);
+        }
+
+        int[] segments = mode == ExtremeMode.MIN ? colMins : colMaxes;
+
+        best = scan(top, col, first * block - 1, col, best, mode);
+
+        for (int i = first; i <= last; i++) {
+            best = best < 0 ? segments[col * blockRows + i] : pick(best, segments[col * blockRows + i], mode);
+        }
+
+        return scan(Math.min((last + 1) * block, rows), col, bottom, col, best, mode);
+    }
+
+    /**
+     * Scan a rectangle cell by cell for a better extreme than a given cell,
+     * which may be -1 if there is none yet.
+     *
+     * @param top
+     * @param left
+     * @param bottom
+     * @param right
+     * @param best
+     * @param mode
+     * @return int
+     */
+    private int scan(int top, int left, int bottom, int right, int best, ExtremeMode mode) {
+        boolean min = mode == ExtremeMode.MIN;
+        int bestValue = best < 0 ? 0 : grid.get(best / cols, best % cols);
+
+        for (int i = top; i <= bottom; i++) {
+            for (int j = left; j <= right; j++) {
+                int value = grid.get(i, j);
+
+                if (best < 0 || (min ? value < bestValue : value > bestValue)
+                        || (value == bestValue && i * cols + j < best)) {
+                    best = i * cols + j;
+                    bestValue = value;
+                }
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Build every level of the table, one level at a time with the rows of each
+     * level in parallel.
+     *
+     * @return void
+     */
+    private void build() {
+        // Summarize the segments of each row and column.
+        if (block > 1) {
+            rowMins = new int[rows * blockCols];
+            rowMaxes = new int[rows * blockCols];
+            colMins = new int[cols * blockRows];
+            colMaxes = new int[cols * blockRows];
+
+            Parallel.forEach(rows, (from, to) -> {
+                for (int i = from; i < to; i++) {
+                    for (int j = 0; j < blockCols; j++) {
+                        int right = Math.min((j + 1) * block, cols) - 1;
+
+                        rowMins[i * blockCols + j] = scan(i, j * block, i, right, -1, ExtremeMode.MIN);
+                        rowMaxes[i * blockCols + j] = scan(i, j * block, i, right, -1, ExtremeMode.MAX);
+                    }
+                }
+            });
+
+            Parallel.forEach(blockRows, (from, to) -> {
+                for (int i = from; i < to; i++) {
+                    int top = i * block;
+                    int bottom = Math.min(top + block, rows) - 1;
+
+                    for (int j = 0; j < cols; j++) {
+                        colMins[j * blockRows + i] = scan(top, j, bottom, j, -1, ExtremeMode.MIN);
+                        colMaxes[j * blockRows + i] = scan(top, j, bottom, j, -1, ExtremeMode.MAX);
+                    }
+                }
+            });
+        }
+
+        // Summarize each block, from its row segments if it has them.
+        int[] blockMins = new int[blockRows * blockCols];
+        int[] blockMaxes = new int[blockRows * blockCols];
+
+        Parallel.forEach(blockRows, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                for (int j = 0; j < blockCols; j++) {
+                    int top = i * block;
+                    int left = j * block;
+                    int bottom = Math.min(top + block, rows) - 1;
+                    int right = Math.min(left + block, cols) - 1;
+
+                    blockMins[i * blockCols + j] = summarize(top, left, bottom, right, rowMins, ExtremeMode.MIN);
+                    blockMaxes[i * blockCols + j] = summarize(top, left, bottom, right, rowMaxes, ExtremeMode.MAX);
+                }
+            }
+        });
+
+        mins[0] = blockMins;
+        maxes[0] = blockMaxes;
+
+        // Double the runs of blocks down the rows, then across the columns.
+        for (int i = 0; i < levelRows; i++) {
+            for (int j = 0; j < levelCols; j++) {
+                if (i == 0 && j == 0) {
+                    continue;
+                }
+
+                mins[i * levelCols + j] = combine(i, j, mins, ExtremeMode.MIN);
+                maxes[i * levelCols + j] = combine(i, j, maxes, ExtremeMode.MAX);
+            }
+        }
+    }
+
+    /**
+     * Find the extreme cell of a block, from the segments of its rows if there
+     * are any.
+     *
+     * @param top
+     * @param left
+     * @param bottom
+     * @param right
+     * @param segments
+     * @param mode
+     * @return int
+     */
+    private int summarize(int top, int left, int bottom, int right, int[] segments, ExtremeMode mode) {
+        if (segments == null) {
+            return scan(top, left, bottom, right, -1, mode);
+        }
+
+        int best = segments[top * blockCols + left / block];
+
+        for (int i = top + 1; i <= bottom; i++) {
+            best = pick(best, segments[i * blockCols + left / block], mode);
+        }
+
+        return best;
+    }
+
+    /**
+     * Build a level of the table from the level with half as many blocks along
+     * the columns, or along the rows for the first column of levels.
+     *
+     * @param i
+     * @param j
+     * @param levels
+     * @param mode
+     * @return int[]
+     */
+    private int[] combine(int i, int j, int[][] levels, ExtremeMode mode) {
+        int height = blockRows - (1 << i) + 1;
+        int width = blockCols - (1 << j) + 1;
+        int[] level = new int[height * width];
+
+        // Runs of the previous level start half a run apart.
+        boolean across = j > 0;
+        int[] previous = levels[across ? i * levelCols + j - 1 : (i - 1) * levelCols];
+        int stride = across ? blockCols - (1 << (j - 1)) + 1 : width;
+        int offset = across ? 1 << (j - 1) : (1 << (i - 1)) * stride;
+
+        Parallel.forEach(height, (from, to) -> {
+            for (int r = from; r < to; r++) {
+                for (int c = 0; c < width; c++) {
+                    int first = r * stride + c;
+
+                    level[r * width + c] = pick(previous[first], previous[first + offset], mode);
+                }
+            }
+        });
+
+        return level;
+    }
+
+    /**
+     * Pick the more extreme of two cells, or the first in row-major order if
+     * they are equal.
+     *
+     * @param a
+     * @param b
+     * @param mode
+     * @return int
+     */
+    private int pick(int a, int b, ExtremeMode mode) {
+        int valueA = grid.get(a / cols, a % cols);
+        int valueB = grid.get(b / cols, b % cols);
+
+        if (valueA == valueB) {
+            return Math.min(a, b);
+        }
+
+        return (valueA < valueB) == (mode == ExtremeMode.MIN) ? a : b;
+    }
+
+    /**
+     * Find the base-2 logarithm of a positive number, rounded down.
+     *
+     * @param value
+     * @return int
+     */
+    private static int log2(int value) {
+        return 31 - Integer.numberOfLeadingZeros(value);
+    }
+}
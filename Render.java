@@ -1,16 +1,36 @@
-import java.io.File;
-import java.awt.Color;
-import java.util.Random;
 import java.awt.Graphics;
 import javax.swing.JFrame;
+import javax.swing.JLabel;
 import javax.swing.JPanel;
+import java.awt.Dimension;
 import java.awt.Graphics2D;
-import java.io.IOException;
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
+import java.awt.Rectangle;
+import javax.swing.JButton;
+import java.awt.BorderLayout;
+import javax.swing.JProgressBar;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.awt.event.KeyAdapter;
+import java.awt.event.MouseAdapter;
+import java.awt.GraphicsEnvironment;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.ComponentAdapter;
 
 /**
  * Render class.
+ *
+ * Shows a scene in a window that can be zoomed with the mouse wheel or the
+ * + and - keys, panned by dragging or with the arrow keys, and reset with 0.
+ * The S key switches the zoomed-out map between the mean, lowest and highest
+ * elevation under each pixel, and the L key cycles the map through the
+ * elevation, slope, aspect and hillshade layers. The H key switches the paths
+ * between translucent lines and a heat layer of how many paths cross each
+ * cell.
+ *
+ * The window opens straight away, and the scene is computed by a background
+ * pipeline. The map appears as soon as it can be drawn and the paths fill in
+ * over it, while a status bar shows the current stage and can cancel it.
  */
 class Render extends JPanel {
 
@@ -19,398 +39,421 @@ class Render extends JPanel {
      */
     private static final long serialVersionUID = 1L;
 
+    /**
+     * The distance around the mouse searched for the highest and lowest points.
+     */
+    private static final int TOOLTIP_RADIUS = 25;
+
+    /**
+     * The zoom factor of one step of the mouse wheel or one key press.
+     */
+    private static final double ZOOM_STEP = 1.25;
+
+    /**
+     * The distance moved by one press of an arrow key, in screen pixels.
+     */
+    private static final int PAN_STEP = 64;
+
+    /**
+     * The size of the window before the size of the map is known.
+     */
+    private static final Dimension LOADING_SIZE = new Dimension(640, 480);
+
     /**
      * The window object.
      */
     private JFrame window = new JFrame();
 
     /**
-     * The 2D graphics canvas object.
+     * The scene drawn in the window.
      */
-    private Graphics2D canvas;
+    private Scene scene;
 
     /**
-     * The random number generator.
+     * The background pipeline computing the scene.
      */
-    private Random rand = new Random();
+    private Pipeline pipeline;
 
     /**
-     * The number of rows in the matrix.
+     * The current stage of the pipeline, its progress and the button that
+     * cancels it.
      */
-    private int rows;
+    private JLabel stage = new JLabel();
+
+    private JProgressBar progress = new JProgressBar(0, 100);
+
+    private JButton cancel = new JButton("Cancel");
 
     /**
-     * The number of columns in the matrix.
+     * The index of regional extremes, once it is built.
      */
-    private int cols;
+    private RangeIndex index;
+
+    /**
+     * The part of the grid shown in the window, once the scene is ready to be
+     * drawn.
+     */
+    private Viewport view;
 
     /**
-     * The matrix.
+     * The last position of the mouse while dragging.
      */
-    private int[][] matrix;
+    private int dragX;
+
+    private int dragY;
 
     /**
-     * The maximum value in the matrix.
+     * The number of rows in the matrix.
      */
-    private int maxOfMatrix;
+    private int rows;
 
     /**
-     * The minimum value in the matrix.
+     * The number of columns in the matrix.
      */
-    private int minOfMatrix;
+    private int cols;
 
     /**
-     * Whether the "--disable-middle-priority" command-line switch is set.
+     * The elevation grid.
      */
-    private boolean disableMiddlePriority = false;
+    private ElevationGrid grid;
 
     /**
      * Render class constructor.
      *
      * @param file
      * @param flag
+     * @param optimal
+     * @param seed
+     * @param trail
+     * @param heat
+     * @param layer
      * @return self
      */
-    public Render(String file, boolean flag) {
-        // Parse the dimensions.
-        parseDimensions(file);
-
-        disableMiddlePriority = flag;
-
-        // Fill the matrix.
-        matrix = Matrix.fill(file, new int[rows][cols]);
-
-        // Find the extreme values.
-        maxOfMatrix = Matrix.findMax(matrix);
-        minOfMatrix = Matrix.findMin(matrix);
-
+    public Render(String file, boolean flag, boolean optimal, long seed, int[] trail, boolean heat, int layer) {
         // Initialize the UI.
         initWindow();
 
-        // Print some statistics.
-        printStatistics();
+        // Compute the scene in the background.
+        pipeline = new Pipeline(this, file, flag, optimal, seed, trail, heat, layer);
+        pipeline.addPropertyChangeListener(event -> {
+            if (event.getPropertyName().equals("progress")) {
+                progress.setIndeterminate(false);
+                progress.setValue((Integer) event.getNewValue());
+                repaint();
+            }
+        });
+        pipeline.execute();
     }
 
     /**
-     * Paint the canvas.
+     * Show a stage of the pipeline that has started, along with the scene and
+     * the index of regional extremes once they are ready.
      *
-     * @param g
+     * @param name
+     * @param scene
+     * @param index
      * @return void
      */
-    @Override
-    public void paintComponent(Graphics g) {
-        super.paintComponent(g);
-
-        canvas = (Graphics2D) g;
-
-        // Draw the map.
-        drawMap();
-
-        // Draw the paths.
-        drawPaths();
-
-        // Draw a flag at the peak.
-        drawPeak();
+    public void showStage(String name, Scene scene, RangeIndex index) {
+        stage.setText(name + "...");
+        progress.setIndeterminate(true);
 
-        // Draw a tent at the base.
-        drawBase();
-    }
-
-    /**
-     * Parse the dimensions from a given filename.
-     *
-     * @param file
-     * @return void
-     */
-    private void parseDimensions(String file) {
-        int underscore = file.lastIndexOf("_");
-        int delimiter = file.lastIndexOf("x");
-        int extension = file.lastIndexOf(".");
-
-        try {
-            cols = Integer.parseInt(file.substring(underscore + 1, delimiter));
-            rows = Integer.parseInt(file.substring(delimiter + 1, extension));
-        } catch (Exception e) {
-            Console.out("Unable to parse values from file. Please make sure the data is intact.");
-            System.exit(-1);
-        }
+        showScene(scene, index);
     }
 
     /**
-     * Initialize the window.
+     * Show the finished scene and print its statistics.
      *
+     * @param scene
      * @return void
      */
-    private void initWindow() {
-        // Set the panel's background color.
-        this.setBackground(Colors.background);
-
-        window.add(this);
-        window.setVisible(true);
-        window.setLocationRelativeTo(null);
-        window.setTitle("What A Lovely Place For A Walk");
-        window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+    public void showResults(Scene scene) {
+        showScene(scene, scene.getRangeIndex());
+        stage.setText("Done");
+        progress.setIndeterminate(false);
+        progress.setValue(100);
+        cancel.setEnabled(false);
+        repaint();
 
-        // Set the window to be slightly taller than the number of rows. This is needed
-        // to account for the title bar, which factors into the window's height rather
-        // than getting added onto it. This "fix" may result in a small black bar at
-        // the bottom of the window, but that's better than having the map cut off.
-        window.setSize(cols, rows + 30);
-
-        // Prevent redraws by disabling window resizing. Using resizing to scale the map
-        // would be better, but not ultimately worth the effort because the relatively
-        // low resolution of the data would result in fairly jarring pixelation. Left
-        // enabled here to allow retriggering of pathing calculations via resizes.
-        // window.setResizable(false);
+        // Print some statistics.
+        printStatistics();
     }
 
     /**
-     * Print some statistics about the matrix.
+     * Show as much of the scene as was ready when the pipeline was cancelled.
      *
+     * @param scene
+     * @param index
      * @return void
      */
-    private void printStatistics() {
-        Console.out(String.format("%nHIGHEST point of elevation on the map: %d", maxOfMatrix));
-        Console.out(String.format("LOWEST point of elevation on the map: %d%n", minOfMatrix));
+    public void showCancelled(Scene scene, RangeIndex index) {
+        showScene(scene, index);
+        stage.setText("Cancelled");
+        progress.setIndeterminate(false);
+        cancel.setEnabled(false);
+        repaint();
     }
 
     /**
-     * Draw the map to the canvas using the data from the matrix.
+     * Paint the canvas.
      *
+     * @param g
      * @return void
      */
-    private void drawMap() {
-        for (int i = 0; i < rows; i++) {
-            drawRow(i);
+    @Override
+    public void paintComponent(Graphics g) {
+        super.paintComponent(g);
+
+        // Draw the visible part of the map, the paths and the markers.
+        if (view != null) {
+            try (Stage frame = Metrics.start("paint")) {
+                frame.setCells((long) getWidth() * getHeight());
+
+                scene.draw((Graphics2D) g, this, view);
+            }
         }
     }
 
     /**
-     * Calculate and draw the paths through the matrix.
+     * Describe the elevation under the mouse and the highest and lowest points
+     * around it.
      *
-     * @return void
+     * @param event
+     * @return String
      */
-    private void drawPaths() {
-        // Collect the total elevation changes for the various paths.
-        int[] paths = new int[rows];
-
-        for (int i = 0; i < rows; i++) {
-            // Draw all paths.
-            paths[i] = drawLowestElevPath(i, Colors.normalPath);
+    @Override
+    public String getToolTipText(MouseEvent event) {
+        if (view == null || index == null) {
+            return null;
         }
 
-        // Find the path that had the least total elevation change.
-        int minElevation = Matrix.findMinOfArray(paths);
-        int minIndex = Matrix.findMinIndexOfArray(paths);
-
-        // Draw the path of least total resistance.
-        drawLowestElevPath(minIndex, Colors.bestPath);
+        int row = (int) Math.floor(view.getRow(event.getY()));
+        int col = (int) Math.floor(view.getCol(event.getX()));
 
-        // Find the path that had the greatest total elevation change.
-        int maxElevation = Matrix.findMaxOfArray(paths);
-        int maxIndex = Matrix.findMaxIndexOfArray(paths);
-
-        // Draw the path of greatest total resistance.
-        drawLowestElevPath(maxIndex, Colors.worstPath);
-
-        // Print path statistics.
-        Console.out(String.format("Total elevation change on the path of LEAST resistance: %d", minElevation));
-        Console.out(String.format("Total elevation change on the path of MOST resistance: %d%n", maxElevation));
-    }
+        if (row < 0 || row >= rows || col < 0 || col >= cols) {
+            return null;
+        }
 
-    /**
-     * Draw a flag at the highest point of elevation.
-     *
-     * @return void
-     */
-    private void drawPeak() {
-        drawImage("flag.png", Matrix.findMaxIndex(matrix));
+        // Search the same distance on screen at any zoom.
+        int radius = (int) Math.ceil(TOOLTIP_RADIUS / view.getScale());
+        int top = Math.max(row - radius, 0);
+        int left = Math.max(col - radius, 0);
+        int bottom = Math.min(row + radius, rows - 1);
+        int right = Math.min(col + radius, cols - 1);
+        int[] max = index.getMaxIndex(top, left, bottom, right);
+        int[] min = index.getMinIndex(top, left, bottom, right);
+
+        return String.format("<html>Elevation %d at (%d, %d)<br>Highest nearby: %d at (%d, %d)"
+                + "<br>Lowest nearby: %d at (%d, %d)</html>", grid.get(row, col), row, col,
+                grid.get(max[0], max[1]), max[0], max[1], grid.get(min[0], min[1]), min[0], min[1]);
     }
 
     /**
-     * Draw a tent at the lowest point of elevation.
+     * Start showing the scene once it is ready to be drawn, sizing the window
+     * to the map, and start answering tooltips once the index is ready.
      *
+     * @param scene
+     * @param index
      * @return void
      */
-    private void drawBase() {
-        drawImage("tent.png", Matrix.findMinIndex(matrix));
-    }
+    private void showScene(Scene scene, RangeIndex index) {
+        this.index = index;
 
-    /**
-     * Draw a given row from the matrix.
-     *
-     * @param row
-     * @return void
-     */
-    private void drawRow(int row) {
-        for (int i = 0; i < cols; i++) {
-            canvas.setColor(calculateColor(matrix[row][i]));
-            canvas.fillRect(i, row, 1, 1);
+        if (scene == null || view != null) {
+            return;
         }
-    }
-
-    /**
-     * Draw a path of "least resistance" by evaluating one step at a time.
-     *
-     * @param row
-     * @param color
-     * @return int
-     */
-    private int drawLowestElevPath(int row, Color color) {
-        int change = 0;
-
-        canvas.setColor(color);
 
-        for (int i = 0; i < cols - 1; i++) {
-            // Draw the current position.
-            canvas.fillRect(i, row, 1, 1);
+        this.scene = scene;
+        grid = scene.getGrid();
+        rows = grid.getRows();
+        cols = grid.getCols();
 
-            // Find the direction and elevation of the next position.
-            int[] next = findNextPosition(row, i);
+        // Size the panel to the map, unless the map is larger than the screen.
+        Rectangle screen = GraphicsEnvironment.getLocalGraphicsEnvironment().getMaximumWindowBounds();
 
-            // Shift the position to the appropriate row.
-            row += next[0];
-
-            // Keep a running total of the change in elevation.
-            change += next[1];
-        }
+        this.setPreferredSize(new Dimension(Math.min(cols, screen.width * 9 / 10),
+                Math.min(rows, screen.height * 9 / 10)));
+        window.pack();
+        window.setLocationRelativeTo(null);
 
-        return change;
+        // Start with the whole map in view.
+        view = new Viewport(rows, cols);
+        view.setSize(getWidth(), getHeight());
+        view.fit();
+        repaint();
     }
 
     /**
-     * Draw a given image on the canvas.
+     * Initialize the window.
      *
-     * @param file
-     * @param position
      * @return void
      */
-    private void drawImage(String file, int[] position) {
-        // Give the image space at the edge of the canvas.
-        int padding = 3;
-
-        try {
-            // Read the image file.
-            BufferedImage img = ImageIO.read(new File(file));
-
-            // Get the dimensions of the image.
-            int width = img.getWidth();
-            int height = img.getHeight();
-
-            // Account for the dimensions of the image during positioning.
-            int imgX = forceRange(position[1] - Math.round(width / 2), padding, cols - 1 - width - padding);
-            int imgY = forceRange(position[0] - height, padding, rows - 1 - height - padding);
-
-            // Position the image on the canvas.
-            canvas.drawImage(img, imgX, imgY, this);
-        } catch (IOException e) {
-            // Couldn't draw image. No error necessary.
-        }
-    }
+    private void initWindow() {
+        // Set the panel's background color.
+        this.setBackground(Colors.background);
 
-    /**
-     * Calculate the color of a given value in the matrix.
-     *
-     * @param value
-     * @return Color
-     */
-    private Color calculateColor(int value) {
-        // Define the color scaling.
-        float half = 0.5f;
-        int range = maxOfMatrix - minOfMatrix;
-        float ratio = ((float) value - minOfMatrix) / range;
-
-        if (ratio >= half) {
-            // Color the higher elevations.
-            return Colors.interpolateColor(Colors.midElevation, Colors.highElevation, (ratio - half) * 2);
-        }
+        // Show the regional extremes under the mouse.
+        this.setToolTipText("");
+
+        // Hold the place of the map until its size is known.
+        this.setPreferredSize(LOADING_SIZE);
+
+        // Keep the view in step with the size of the panel.
+        this.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent event) {
+                if (view != null) {
+                    view.setSize(getWidth(), getHeight());
+                    repaint();
+                }
+            }
+        });
+
+        // Zoom with the mouse wheel and pan by dragging.
+        MouseAdapter mouse = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent event) {
+                dragX = event.getX();
+                dragY = event.getY();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent event) {
+                if (view == null) {
+                    return;
+                }
+
+                view.pan(event.getX() - dragX, event.getY() - dragY);
+                dragX = event.getX();
+                dragY = event.getY();
+                repaint();
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent event) {
+                if (view == null) {
+                    return;
+                }
+
+                view.zoom(Math.pow(ZOOM_STEP, -event.getPreciseWheelRotation()), event.getX(), event.getY());
+                repaint();
+            }
+        };
+
+        this.addMouseListener(mouse);
+        this.addMouseMotionListener(mouse);
+        this.addMouseWheelListener(mouse);
+
+        // Zoom, pan and switch the map with the keyboard.
+        this.setFocusable(true);
+        this.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent event) {
+                pressKey(event);
+            }
+        });
+
+        // Show the stage of the pipeline, with a button to cancel it.
+        JPanel status = new JPanel(new BorderLayout(8, 0));
+
+        cancel.setFocusable(false);
+        cancel.addActionListener(event -> pipeline.cancel(false));
+        status.add(stage, BorderLayout.WEST);
+        status.add(progress, BorderLayout.CENTER);
+        status.add(cancel, BorderLayout.EAST);
+
+        window.add(this, BorderLayout.CENTER);
+        window.add(status, BorderLayout.SOUTH);
+        window.pack();
+        window.setLocationRelativeTo(null);
+        window.setTitle("What A Lovely Place For A Walk");
+        window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
-        // Color the lower elevations.
-        return Colors.interpolateColor(Colors.lowElevation, Colors.midElevation, ratio * 2);
+        window.setVisible(true);
+        this.requestFocusInWindow();
     }
 
     /**
-     * Find the position of the next "best" step in the path.
+     * Zoom, pan or switch the map or paths for a given key press.
      *
-     * @param row
-     * @param col
-     * @return int[]
+     * @param event
+     * @return void
      */
-    private int[] findNextPosition(int row, int col) {
-        // Store the current elevation for later comparison.
-        int current = matrix[row][col];
-
-        // Advance the search to the next column.
-        col++;
-
-        // Calculate the elevations of possible next steps, being careful
-        // to avoid overflowing the matrix at the top and bottom edges.
-        int fwdChange = Math.abs(current - matrix[row][col]);
-        int upChange = row > 0 ? Math.abs(current - matrix[row - 1][col]) : fwdChange;
-        int downChange = row < rows - 1 ? Math.abs(current - matrix[row + 1][col]) : fwdChange;
-
-        // Find the minimum value among the three possible directions.
-        int min = Matrix.findMinOfArray(new int[] { upChange, fwdChange, downChange });
-
-        // Define relative row movements.
-        int up = -1;
-        int fwd = 0;
-        int down = 1;
-
-        // The disableMiddlePriority switch disables the "middle-priority" rule
-        // (described in the project specifications) in order to achieve more
-        // divergent pathing. Pass "--disable-middle-priority" as the second
-        // command-line argument to flip the switch and activate the chaos!
-
-        if (disableMiddlePriority && min == fwdChange && min == upChange) {
-            // Randomly select between forward and up.
-            return rand.nextInt(2) == 0 || row == 0 ? tuple(fwd, fwdChange) : tuple(up, upChange);
-        }
-
-        if (disableMiddlePriority && min == fwdChange && min == downChange) {
-            // Randomly select between forward and down.
-            return rand.nextInt(2) == 0 || row == rows - 1 ? tuple(fwd, fwdChange) : tuple(down, downChange);
-        }
-
-        if (min == fwdChange) {
-            // Move forward.
-            return tuple(fwd, fwdChange);
-        }
-
-        if (min == upChange && min == downChange) {
-            // Randomly select between up and down.
-            return rand.nextInt(2) == 0 ? tuple(up, upChange) : tuple(down, downChange);
+    private void pressKey(KeyEvent event) {
+        if (view == null) {
+            return;
         }
 
-        if (min == upChange) {
-            // Move up.
-            return tuple(up, upChange);
+        int centerX = getWidth() / 2;
+        int centerY = getHeight() / 2;
+
+        switch (event.getKeyCode()) {
+            case KeyEvent.VK_PLUS:
+            case KeyEvent.VK_EQUALS:
+            case KeyEvent.VK_ADD:
+                view.zoom(ZOOM_STEP, centerX, centerY);
+                break;
+            case KeyEvent.VK_MINUS:
+            case KeyEvent.VK_SUBTRACT:
+                view.zoom(1 / ZOOM_STEP, centerX, centerY);
+                break;
+            case KeyEvent.VK_0:
+            case KeyEvent.VK_NUMPAD0:
+                view.fit();
+                break;
+            case KeyEvent.VK_LEFT:
+                view.pan(PAN_STEP, 0);
+                break;
+            case KeyEvent.VK_RIGHT:
+                view.pan(-PAN_STEP, 0);
+                break;
+            case KeyEvent.VK_UP:
+                view.pan(0, PAN_STEP);
+                break;
+            case KeyEvent.VK_DOWN:
+                view.pan(0, -PAN_STEP);
+                break;
+            case KeyEvent.VK_S:
+                scene.setSummary((scene.getSummary() + 1) % 3);
+                break;
+            case KeyEvent.VK_L:
+                if (grid.isOutOfCore()) {
+                    return;
+                }
+
+                scene.setLayer((scene.getLayer() + 1) % Stencil.LAYERS);
+                break;
+            case KeyEvent.VK_H:
+                scene.setHeat(!scene.isHeat(), this);
+                break;
+            default:
+                return;
         }
 
-        // Move down.
-        return tuple(down, downChange);
+        repaint();
     }
 
     /**
-     * Force a given number into a range.
+     * Print some statistics about the matrix.
      *
-     * @param value
-     * @param min
-     * @param max
-     * @return int
+     * @return void
      */
-    private int forceRange(int value, int min, int max) {
-        return Math.min(Math.max(value, min), max);
-    }
+    private void printStatistics() {
+        Console.out(String.format("%nHIGHEST point of elevation on the map: %d", grid.getStatistics().getMax()));
+        Console.out(String.format("LOWEST point of elevation on the map: %d%n", grid.getStatistics().getMin()));
 
-    /**
-     * Group two values together, simulating a tuple.
-     *
-     * @param value1
-     * @param value2
-     * @return int[]
-     */
-    private int[] tuple(int value1, int value2) {
-        return new int[] { value1, value2 };
+        // Print path statistics.
+        Console.out(String.format("Total elevation change on the path of LEAST resistance: %d",
+                scene.getBest().getTotal()));
+        Console.out(String.format("Total elevation change on the path of MOST resistance: %d%n",
+                scene.getWorst().getTotal()));
+
+        // Print route statistics.
+        if (scene.getTrail() != null) {
+            int[] ends = scene.getTrailEnds();
+
+            Console.out(String.format("Total elevation change on the ROUTE from (%d, %d) to (%d, %d): %d%n",
+                    ends[0], ends[1], ends[2], ends[3], scene.getTrail().getCost()));
+        }
     }
 }
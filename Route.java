@@ -0,0 +1,75 @@
+/**
+ * Route class.
+ *
+ * A single path from the first column of a grid to the last: its starting
+ * row, the row movement (-1, 0 or 1) of each step and its total elevation
+ * change.
+ */
+public class Route {
+
+    /**
+     * The starting row of the route.
+     */
+    private int start;
+
+    /**
+     * The row movement of each step.
+     */
+    private byte[] moves;
+
+    /**
+     * The total elevation change along the route.
+     */
+    private int total;
+
+    /**
+     * Route class constructor.
+     *
+     * @param start
+     * @param moves
+     * @param total
+     * @return self
+     */
+    public Route(int start, byte[] moves, int total) {
+        this.start = start;
+        this.moves = moves;
+        this.total = total;
+    }
+
+    /**
+     * Get the starting row of the route.
+     *
+     * @return int
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * Get the total elevation change along the route.
+     *
+     * @return int
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Fill in the row of the route in each column.
+     *
+     * @param positions
+     * @return int[]
+     */
+    public int[] getPositions(int[] positions) {
+        int row = start;
+
+        positions[0] = row;
+
+        for (int i = 0; i < moves.length; i++) {
+            row += moves[i];
+            positions[i + 1] = row;
+        }
+
+        return positions;
+    }
+}
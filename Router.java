@@ -0,0 +1,338 @@
+import java.util.Arrays;
+
+/**
+ * Router class.
+ *
+ * Finds the route of least total elevation change between any two cells of a
+ * grid, moving to any of the eight neighbouring cells at a cost of the change
+ * in elevation, with an A* search. The remaining change can never be less
+ * than the difference in elevation to the target, so that difference guides
+ * the search without ever ruling out the best route.
+ *
+ * The search state lives in flat arrays sized to the grid and a radix heap of
+ * int arrays, all kept between queries. Each query bumps a query number
+ * instead of clearing the arrays, so after the first query a search
+ * allocates nothing but the trail it returns.
+ */
+public class Router {
+
+    /**
+     * The row and column offsets of the eight neighbouring cells.
+     */
+    private static final int[] ROW_STEPS = { -1, -1, -1, 0, 0, 1, 1, 1 };
+
+    private static final int[] COL_STEPS = { -1, 0, 1, -1, 1, -1, 0, 1 };
+
+    /**
+     * The elevation grid.
+     */
+    private ElevationGrid grid;
+
+    /**
+     * The number of rows in the grid.
+     */
+    private int rows;
+
+    /**
+     * The number of columns in the grid.
+     */
+    private int cols;
+
+    /**
+     * The least known cost of reaching each cell in the current query, packed
+     * as (query << 32) | cost so that both are read with a single load.
+     */
+    private long[] costs;
+
+    /**
+     * The neighbour from which each cell was best reached.
+     */
+    private byte[] directions;
+
+    /**
+     * The current query.
+     */
+    private int generation = 0;
+
+    /**
+     * The radix heap of cells to expand. Bucket 0 holds the entries whose
+     * estimate equals the last one removed, and bucket i those whose estimate
+     * first differs from it in bit i - 1.
+     */
+    private int[][] estimates = new int[33][];
+
+    private int[][] queued = new int[33][];
+
+    /**
+     * The number of entries in each bucket.
+     */
+    private int[] sizes = new int[33];
+
+    /**
+     * The estimate of the entry last removed from the heap.
+     */
+    private int last;
+
+    /**
+     * The total number of entries in the heap.
+     */
+    private int size;
+
+    /**
+     * Router class constructor.
+     *
+     * The search state takes nine bytes per cell, so routes are not found over
+     * grids kept on disk.
+     *
+     * @param grid
+     * @return self
+     */
+    public Router(ElevationGrid grid) {
+        if (grid.isOutOfCore()) {
+            throw new IllegalArgumentException("Routes are not available for tiled grids.");
+        }
+
+        this.grid = grid;
+        this.rows = grid.getRows();
+        this.cols = grid.getCols();
+
+        for (int i = 0; i < estimates.length; i++) {
+            estimates[i] = new int[64];
+            queued[i] = new int[64];
+        }
+    }
+
+    /**
+     * Get the number of bytes taken by the search state kept between routes.
+     *
+     * @return long
+     */
+    public synchronized long getMemoryUsage() {
+        long bytes = costs != null ? (long) costs.length * Long.BYTES + directions.length : 0;
+
+        for (int i = 0; i < estimates.length; i++) {
+            bytes += (long) (estimates[i].length + queued[i].length) * Integer.BYTES;
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Find the route of least total elevation change between two cells.
+     *
+     * @param fromRow
+     * @param fromCol
+     * @param toRow
+     * @param toCol
+     * @return Trail
+     */
+    public synchronized Trail find(int fromRow, int fromCol, int toRow, int toCol) {
+        if (!contains(fromRow, fromCol) || !contains(toRow, toCol)) {
+            throw new IllegalArgumentException("Route endpoints must be inside the grid.");
+        }
+
+        prepare();
+
+        int source = fromRow * cols + fromCol;
+        int target = toRow * cols + toCol;
+        int goal = grid.get(toRow, toCol);
+        int expanded = 0;
+
+        costs[source] = (long) generation << 32;
+        directions[source] = -1;
+        push(Math.abs(goal - grid.get(fromRow, fromCol)), source);
+
+        while (size > 0) {
+            int cell = pop();
+            int row = cell / cols;
+            int col = cell - row * cols;
+            int value = grid.get(row, col);
+            int cost = (int) costs[cell];
+
+            // Skip entries left behind when a cell was reached more cheaply.
+            if (cost + Math.abs(goal - value) != last) {
+                continue;
+            }
+
+            expanded++;
+
+            if (cell == target) {
+                break;
+            }
+
+            for (int i = 0; i < 8; i++) {
+                int nextRow = row + ROW_STEPS[i];
+                int nextCol = col + COL_STEPS[i];
+
+                if (!contains(nextRow, nextCol)) {
+                    continue;
+                }
+
+                int next = nextRow * cols + nextCol;
+                int nextValue = grid.get(nextRow, nextCol);
+                int nextCost = cost + Math.abs(value - nextValue);
+
+                // A cost left over from an earlier query counts as unknown.
+                long known = costs[next];
+
+                if ((int) (known >>> 32) != generation || nextCost < (int) known) {
+                    costs[next] = ((long) generation << 32) | nextCost;
+                    directions[next] = (byte) i;
+                    push(nextCost + Math.abs(goal - nextValue), next);
+                }
+            }
+        }
+
+        return new Trail(trace(source, target), (int) costs[target], expanded);
+    }
+
+    /**
+     * Reset the search state for a new query, allocating it on first use.
+     *
+     * @return void
+     */
+    private void prepare() {
+        if (costs == null) {
+            costs = new long[rows * cols];
+            directions = new byte[rows * cols];
+        }
+
+        // Start the query numbers over in the unlikely case they run out.
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(costs, 0);
+            generation = 0;
+        }
+
+        generation++;
+        size = 0;
+        last = 0;
+
+        Arrays.fill(sizes, 0);
+    }
+
+    /**
+     * Follow the best directions back from the target to list the cells of the
+     * route in order.
+     *
+     * @param source
+     * @param target
+     * @return int[]
+     */
+    private int[] trace(int source, int target) {
+        int length = 1;
+
+        for (int cell = target; cell != source; cell = previous(cell)) {
+            length++;
+        }
+
+        int[] cells = new int[length];
+
+        int cell = target;
+
+        for (int i = length - 1; i > 0; i--) {
+            cells[i] = cell;
+            cell = previous(cell);
+        }
+
+        cells[0] = source;
+
+        return cells;
+    }
+
+    /**
+     * Get the cell from which a given cell was best reached.
+     *
+     * @param cell
+     * @return int
+     */
+    private int previous(int cell) {
+        int direction = directions[cell];
+
+        return cell - ROW_STEPS[direction] * cols - COL_STEPS[direction];
+    }
+
+    /**
+     * Check whether a given position is inside the grid.
+     *
+     * @param row
+     * @param col
+     * @return boolean
+     */
+    private boolean contains(int row, int col) {
+        return row >= 0 && row < rows && col >= 0 && col < cols;
+    }
+
+    /**
+     * Add a cell to the heap with a given estimate of the total cost through it.
+     *
+     * Estimates never fall below the last one removed, because the difference
+     * in elevation never overstates the cost of a single move.
+     *
+     * @param estimate
+     * @param cell
+     * @return void
+     */
+    private void push(int estimate, int cell) {
+        add(32 - Integer.numberOfLeadingZeros(estimate ^ last), estimate, cell);
+        size++;
+    }
+
+    /**
+     * Remove a cell with the lowest estimate from the heap, setting last to its
+     * estimate.
+     *
+     * @return int
+     */
+    private int pop() {
+        if (sizes[0] == 0) {
+            // Find the first bucket with any entries, and its lowest estimate.
+            int bucket = 1;
+
+            while (sizes[bucket] == 0) {
+                bucket++;
+            }
+
+            int count = sizes[bucket];
+            int[] bucketEstimates = estimates[bucket];
+            int[] bucketCells = queued[bucket];
+
+            last = Integer.MAX_VALUE;
+
+            for (int i = 0; i < count; i++) {
+                last = Math.min(last, bucketEstimates[i]);
+            }
+
+            // Spread the bucket over the lower buckets. Every entry lands in a
+            // lower bucket, so the arrays being read are never written.
+            sizes[bucket] = 0;
+
+            for (int i = 0; i < count; i++) {
+                add(32 - Integer.numberOfLeadingZeros(bucketEstimates[i] ^ last), bucketEstimates[i], bucketCells[i]);
+            }
+        }
+
+        size--;
+
+        return queued[0][--sizes[0]];
+    }
+
+    /**
+     * Add an entry to a given bucket, growing it if needed.
+     *
+     * @param bucket
+     * @param estimate
+     * @param cell
+     * @return void
+     */
+    private void add(int bucket, int estimate, int cell) {
+        int count = sizes[bucket]++;
+
+        if (count == queued[bucket].length) {
+            estimates[bucket] = Arrays.copyOf(estimates[bucket], count * 2);
+            queued[bucket] = Arrays.copyOf(queued[bucket], count * 2);
+        }
+
+        estimates[bucket][count] = estimate;
+        queued[bucket][count] = cell;
+    }
+}
@@ -0,0 +1,1251 @@
+import java.io.File;
+import java.util.Map;
+import java.awt.Color;
+import java.util.List;
+import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Executors;
+import java.util.function.IntPredicate;
+import java.util.concurrent.ExecutorService;
+import java.awt.Graphics2D;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+import java.awt.RenderingHints;
+import java.awt.image.ImageObserver;
+import java.awt.image.DataBufferInt;
+import java.awt.image.BufferedImage;
+
+/**
+ * Scene class.
+ *
+ * Everything drawn for a grid: the map, the paths over it and the markers at
+ * its extremes. Each layer is rendered once into an image and reused, and none
+ * of it needs a window, so it can be drawn to the screen or saved to a file.
+ *
+ * A zoomed view draws the map from a pyramid of downsampled levels, one tile
+ * at a time and only where it is visible, so the cost of a frame depends on
+ * the size of the window rather than the size of the grid. When it is drawn
+ * for a window, nothing slow is done while drawing: missing tiles are rendered
+ * in the background, and the paths are drawn as far as they have been
+ * rendered so far.
+ */
+public class Scene {
+
+    /**
+     * The most memory the regional extremes index may take, in bytes.
+     */
+    private static final long INDEX_BUDGET = 64L << 20;
+
+    /**
+     * The most memory the stored levels of the pyramid may take, in bytes.
+     */
+    private static final long PYRAMID_BUDGET = 256L << 20;
+
+    /**
+     * The number of rows and columns of level cells in each tile of the map.
+     */
+    public static final int TILE_SIZE = 256;
+
+    /**
+     * The number of rendered tiles of the map kept for reuse.
+     */
+    private static final int TILE_CACHE = 256;
+
+    /**
+     * The thread that renders tiles of the map in the background for windows.
+     */
+    private static final ExecutorService RENDERER = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "Tile renderer");
+
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
+    /**
+     * The images of the markers, read once and shared.
+     */
+    private static BufferedImage flag;
+
+    private static BufferedImage tent;
+
+    /**
+     * The elevation grid.
+     */
+    private ElevationGrid grid;
+
+    /**
+     * The number of rows in the matrix.
+     */
+    private int rows;
+
+    /**
+     * The number of columns in the matrix.
+     */
+    private int cols;
+
+    /**
+     * Whether the "--disable-middle-priority" command-line switch is set.
+     */
+    private boolean disableMiddlePriority;
+
+    /**
+     * Whether the best and worst paths are the exact optima rather than the
+     * best and worst of the greedy paths.
+     */
+    private boolean optimal;
+
+    /**
+     * The random seed for the path walker.
+     */
+    private long seed;
+
+    /**
+     * The stored paths, walked once for the current grid and mode.
+     */
+    private volatile PathStore paths;
+
+    /**
+     * The routes of least and greatest total elevation change.
+     */
+    private Route best;
+
+    private Route worst;
+
+    /**
+     * The endpoints of the point-to-point route as { fromRow, fromCol, toRow,
+     * toCol }, or null if there is none.
+     */
+    private int[] trailEnds;
+
+    /**
+     * The point-to-point route, found on first use.
+     */
+    private Trail trail;
+
+    /**
+     * The router for point-to-point routes, kept so that its search state is
+     * reused from one route to the next.
+     */
+    private volatile Router router;
+
+    /**
+     * The index of regional extremes, built on first use.
+     */
+    private volatile RangeIndex rangeIndex;
+
+    /**
+     * The downsampled levels of the grid, built on first use.
+     */
+    private volatile Pyramid pyramid;
+
+    /**
+     * Which value of each level cell is drawn: Pyramid.MEAN, MIN or MAX.
+     */
+    private volatile int summary = Pyramid.MEAN;
+
+    /**
+     * The most recently drawn tiles of the map, by level, layer, summary and
+     * position.
+     */
+    private Map<Long, BufferedImage> tiles = new LinkedHashMap<>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, BufferedImage> eldest) {
+            return size() > TILE_CACHE;
+        }
+    };
+
+    /**
+     * The tiles waiting to be rendered in the background, with the frame that
+     * last asked for each of them.
+     */
+    private Map<Long, Long> pending = new HashMap<>();
+
+    /**
+     * The number of frames drawn for a window so far.
+     */
+    private volatile long frame;
+
+    /**
+     * The palette of colors for each elevation on the map.
+     */
+    private Palette palette;
+
+    /**
+     * The slope, aspect and hillshade of the grid, computed on first use.
+     */
+    private volatile Stencil stencil;
+
+    /**
+     * Which layer the map is drawn from: Stencil.ELEVATION, SLOPE, ASPECT or
+     * HILLSHADE.
+     */
+    private volatile int layer = Stencil.ELEVATION;
+
+    /**
+     * The map of each layer, rendered once from the grid or its stencils.
+     */
+    private BufferedImage[] terrains = new BufferedImage[Stencil.LAYERS];
+
+    /**
+     * The number of paths crossing each cell, counted once for the stored
+     * paths.
+     */
+    private volatile Density density;
+
+    /**
+     * Whether the paths are drawn as a heat layer of how many cross each cell,
+     * rather than as translucent lines.
+     */
+    private volatile boolean heat;
+
+    /**
+     * The paths drawn over the map, rendered once from the stored paths. This
+     * is set as soon as the first batch of paths is drawn into it.
+     */
+    private volatile BufferedImage overlay;
+
+    /**
+     * The number of times the overlay has been drawn into.
+     */
+    private volatile int overlayVersion;
+
+    /**
+     * The stored paths that the overlay was rendered from.
+     */
+    private PathStore overlayPaths;
+
+    /**
+     * Whether the overlay was drawn as a heat layer.
+     */
+    private boolean overlayHeat;
+
+    /**
+     * The overlay halved once per level, built as each level is needed, with
+     * the overlay itself as level 0.
+     */
+    private List<BufferedImage> overlayLevels = new ArrayList<>();
+
+    /**
+     * The version of the overlay that its levels were built from.
+     */
+    private int overlayLevelsVersion;
+
+    /**
+     * Scene class constructor.
+     *
+     * @param grid
+     * @param disableMiddlePriority
+     * @param optimal
+     * @param seed
+     * @return self
+     */
+    public Scene(ElevationGrid grid, boolean disableMiddlePriority, boolean optimal, long seed) {
+        this.grid = grid;
+        this.rows = grid.getRows();
+        this.cols = grid.getCols();
+        this.disableMiddlePriority = disableMiddlePriority;
+        this.optimal = optimal;
+        this.seed = seed;
+
+        // Build the color palette for the range of elevations.
+        Statistics statistics = grid.getStatistics();
+
+        palette = Palette.standard(statistics.getMin(), statistics.getMax());
+    }
+
+    /**
+     * Get the elevation grid.
+     *
+     * @return ElevationGrid
+     */
+    public ElevationGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Get the number of bytes taken by everything built from the grid so far,
+     * not counting the grid itself. This does not wait for the scene's lock,
+     * so anything still being built is counted once it is done.
+     *
+     * @return long
+     */
+    public long getMemoryUsage() {
+        long bytes = 0;
+
+        bytes += paths != null ? paths.getMemoryUsage() : 0;
+        bytes += rangeIndex != null ? rangeIndex.getMemoryUsage() : 0;
+        bytes += pyramid != null ? pyramid.getMemoryUsage() : 0;
+        bytes += stencil != null ? stencil.getMemoryUsage() : 0;
+        bytes += density != null ? density.getMemoryUsage() : 0;
+        bytes += router != null ? router.getMemoryUsage() : 0;
+        bytes += getMemoryUsage(overlay);
+
+        for (BufferedImage terrain : terrains) {
+            bytes += getMemoryUsage(terrain);
+        }
+
+        // The first level of the overlay is the overlay itself.
+        synchronized (overlayLevels) {
+            for (int i = 1; i < overlayLevels.size(); i++) {
+                bytes += getMemoryUsage(overlayLevels.get(i));
+            }
+        }
+
+        synchronized (tiles) {
+            for (BufferedImage tile : tiles.values()) {
+                bytes += getMemoryUsage(tile);
+            }
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Get the index of regional extremes, building it on first use. Once it is
+     * built, this never waits on the scene's lock.
+     *
+     * @return RangeIndex
+     */
+    public RangeIndex getRangeIndex() {
+        if (rangeIndex == null) {
+            synchronized (this) {
+                if (rangeIndex == null) {
+                    try (Stage stage = Metrics.start("index")) {
+                        stage.setCells((long) rows * cols);
+
+                        rangeIndex = RangeIndex.withBudget(grid, INDEX_BUDGET);
+                    }
+                }
+            }
+        }
+
+        return rangeIndex;
+    }
+
+    /**
+     * Get the downsampled levels of the grid, building them on first use. Once
+     * they are built, this never waits on the scene's lock.
+     *
+     * @return Pyramid
+     */
+    public Pyramid getPyramid() {
+        if (pyramid == null) {
+            synchronized (this) {
+                if (pyramid == null) {
+                    try (Stage stage = Metrics.start("levels")) {
+                        stage.setCells((long) rows * cols);
+
+                        pyramid = new Pyramid(grid, PYRAMID_BUDGET);
+                    }
+                }
+            }
+        }
+
+        return pyramid;
+    }
+
+    /**
+     * Get the slope, aspect and hillshade of the grid, computing them on first
+     * use. Once they are computed, this never waits on the scene's lock.
+     *
+     * @return Stencil
+     */
+    public Stencil getStencil() {
+        if (stencil == null) {
+            synchronized (this) {
+                if (stencil == null) {
+                    try (Stage stage = Metrics.start("stencil")) {
+                        stage.setCells((long) rows * cols);
+
+                        stencil = new Stencil(grid);
+                    }
+                }
+            }
+        }
+
+        return stencil;
+    }
+
+    /**
+     * Set which layer the map is drawn from. Tiled grids are only drawn from
+     * their elevations.
+     *
+     * @param layer
+     * @return void
+     */
+    public void setLayer(int layer) {
+        if (layer != Stencil.ELEVATION && grid.isOutOfCore()) {
+            throw new IllegalArgumentException(
+                    "The slope, aspect and hillshade layers are not available for tiled grids.");
+        }
+
+        this.layer = layer;
+    }
+
+    /**
+     * Get which layer the map is drawn from.
+     *
+     * @return int
+     */
+    public int getLayer() {
+        return layer;
+    }
+
+    /**
+     * Set which value of each level cell is drawn in a zoomed view.
+     *
+     * @param summary
+     * @return void
+     */
+    public void setSummary(int summary) {
+        this.summary = summary;
+    }
+
+    /**
+     * Get which value of each level cell is drawn in a zoomed view.
+     *
+     * @return int
+     */
+    public int getSummary() {
+        return summary;
+    }
+
+    /**
+     * Set whether the paths are drawn as a heat layer.
+     *
+     * Given an observer, paths that have all been counted are drawn again in
+     * the background, and the observer is told once they are ready. Paths
+     * still being counted switch with the next batch.
+     *
+     * @param heat
+     * @param observer
+     * @return void
+     */
+    public void setHeat(boolean heat, ImageObserver observer) {
+        this.heat = heat;
+
+        if (observer != null && density != null) {
+            RENDERER.execute(() -> {
+                BufferedImage overlay = getOverlay();
+
+                observer.imageUpdate(overlay, ImageObserver.ALLBITS, 0, 0, overlay.getWidth(), overlay.getHeight());
+            });
+        }
+    }
+
+    /**
+     * Get whether the paths are drawn as a heat layer.
+     *
+     * @return boolean
+     */
+    public boolean isHeat() {
+        return heat;
+    }
+
+    /**
+     * Get the number of paths crossing each cell, counting them if the stored
+     * paths have changed.
+     *
+     * @return Density
+     */
+    public synchronized Density getDensity() {
+        checkInCore("The path density");
+
+        PathStore paths = getPaths();
+
+        if (density == null || !density.isFor(paths)) {
+            Density counts = new Density(paths, rows, cols);
+
+            counts.add(0, rows);
+            density = counts;
+        }
+
+        return density;
+    }
+
+    /**
+     * Get the stored paths, walking them only if the grid or mode has changed.
+     *
+     * @return PathStore
+     */
+    public synchronized PathStore getPaths() {
+        if (paths == null || !paths.isFor(grid, disableMiddlePriority)) {
+            try (Stage stage = Metrics.start("paths")) {
+                stage.setCells((long) rows * (cols - 1)).setPaths(rows);
+
+                paths = new PathStore(Walker.create(grid, disableMiddlePriority, seed));
+            }
+
+            best = null;
+            worst = null;
+        }
+
+        return paths;
+    }
+
+    /**
+     * Get the route of least total elevation change.
+     *
+     * @return Route
+     */
+    public synchronized Route getBest() {
+        if (best == null) {
+            PathStore paths = getPaths();
+
+            best = optimal ? findOptimal(ExtremeMode.MIN) : paths.getRoute(paths.getBest());
+        }
+
+        return best;
+    }
+
+    /**
+     * Get the route of greatest total elevation change.
+     *
+     * @return Route
+     */
+    public synchronized Route getWorst() {
+        if (worst == null) {
+            PathStore paths = getPaths();
+
+            worst = optimal ? findOptimal(ExtremeMode.MAX) : paths.getRoute(paths.getWorst());
+        }
+
+        return worst;
+    }
+
+    /**
+     * Find the exact route of least or greatest total elevation change.
+     *
+     * @param mode
+     * @return Route
+     */
+    private Route findOptimal(ExtremeMode mode) {
+        try (Stage stage = Metrics.start("optimal")) {
+            stage.setCells((long) rows * cols);
+
+            return OptimalPath.find(grid, mode);
+        }
+    }
+
+    /**
+     * Set the endpoints of the point-to-point route as { fromRow, fromCol,
+     * toRow, toCol }. An endpoint given as -1, -1 is taken to be the lowest
+     * point for the start or the highest point for the finish.
+     *
+     * @param ends
+     * @return void
+     */
+    public synchronized void setTrail(int[] ends) {
+        int[] from = ends[0] < 0 ? grid.getStatistics().getMinIndex() : new int[] { ends[0], ends[1] };
+        int[] to = ends[2] < 0 ? grid.getStatistics().getMaxIndex() : new int[] { ends[2], ends[3] };
+
+        if (from[0] >= rows || from[1] >= cols || to[0] >= rows || to[1] >= cols) {
+            throw new IllegalArgumentException("Route endpoints must be inside the grid.");
+        }
+
+        trailEnds = new int[] { from[0], from[1], to[0], to[1] };
+
+        trail = null;
+        overlay = null;
+    }
+
+    /**
+     * Get the endpoints of the point-to-point route, or null if there is none.
+     *
+     * @return int[]
+     */
+    public int[] getTrailEnds() {
+        return trailEnds;
+    }
+
+    /**
+     * Get the point-to-point route, finding it on first use, or null if there
+     * is none.
+     *
+     * @return Trail
+     */
+    public synchronized Trail getTrail() {
+        if (trail == null && trailEnds != null) {
+            try (Stage stage = Metrics.start("route")) {
+                if (router == null) {
+                    router = new Router(grid);
+                }
+
+                trail = router.find(trailEnds[0], trailEnds[1], trailEnds[2], trailEnds[3]);
+                stage.setCells(trail.getExpanded());
+            }
+        }
+
+        return trail;
+    }
+
+    /**
+     * Draw the whole scene on a canvas.
+     *
+     * @param canvas
+     * @param observer
+     * @return void
+     */
+    public void draw(Graphics2D canvas, ImageObserver observer) {
+        // Draw the map.
+        canvas.drawImage(getTerrain(), 0, 0, observer);
+
+        // Draw the paths.
+        canvas.drawImage(getOverlay(), 0, 0, observer);
+
+        // Draw a flag at the peak.
+        int[] peak = grid.getStatistics().getMaxIndex();
+
+        drawImage(canvas, observer, getFlag(), peak[1], peak[0], cols, rows);
+
+        // Draw a tent at the base.
+        int[] base = grid.getStatistics().getMinIndex();
+
+        drawImage(canvas, observer, getTent(), base[1], base[0], cols, rows);
+    }
+
+    /**
+     * Draw the part of the scene inside a viewport on a canvas of its size.
+     *
+     * Given an observer, missing tiles are left out and rendered in the
+     * background, and the observer is told to draw again once each is ready.
+     * The paths are then drawn only as far as they have been rendered.
+     *
+     * @param canvas
+     * @param observer
+     * @param view
+     * @return void
+     */
+    public void draw(Graphics2D canvas, ImageObserver observer, Viewport view) {
+        Pyramid pyramid = getPyramid();
+        long frame = ++this.frame;
+        int level = view.getLevel(pyramid.getLevels());
+        int size = 1 << level;
+
+        canvas.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+
+        // Find the level cells inside the window.
+        int levelRows = pyramid.getRows(level);
+        int levelCols = pyramid.getCols(level);
+        int top = Math.max((int) Math.floor(view.getRow(0) / size), 0);
+        int left = Math.max((int) Math.floor(view.getCol(0) / size), 0);
+        int bottom = Math.min((int) Math.ceil(view.getRow(view.getHeight()) / size), levelRows);
+        int right = Math.min((int) Math.ceil(view.getCol(view.getWidth()) / size), levelCols);
+
+        if (top >= bottom || left >= right) {
+            return;
+        }
+
+        // Draw the map one visible tile at a time.
+        for (int i = top / TILE_SIZE; i <= (bottom - 1) / TILE_SIZE; i++) {
+            for (int j = left / TILE_SIZE; j <= (right - 1) / TILE_SIZE; j++) {
+                BufferedImage tile = getTile(level, i, j, observer, frame);
+
+                if (tile == null) {
+                    continue;
+                }
+
+                int x = (int) Math.round(view.getX((double) j * TILE_SIZE * size));
+                int y = (int) Math.round(view.getY((double) i * TILE_SIZE * size));
+                int width = (int) Math.round(view.getX((double) (j * TILE_SIZE + tile.getWidth()) * size)) - x;
+                int height = (int) Math.round(view.getY((double) (i * TILE_SIZE + tile.getHeight()) * size)) - y;
+
+                canvas.drawImage(tile, x, y, width, height, observer);
+            }
+        }
+
+        // Draw the visible part of the paths at the same level, if there are
+        // any for the grid.
+        int version = overlayVersion;
+        BufferedImage overlay = observer == null && !grid.isOutOfCore() ? getOverlay() : this.overlay;
+
+        if (overlay != null) {
+            int x = (int) Math.round(view.getX((double) left * size));
+            int y = (int) Math.round(view.getY((double) top * size));
+            int width = (int) Math.round(view.getX((double) right * size)) - x;
+            int height = (int) Math.round(view.getY((double) bottom * size)) - y;
+
+            canvas.drawImage(getOverlay(overlay, version, level), x, y, x + width, y + height,
+                    left, top, right, bottom, observer);
+        }
+
+        // Draw a flag at the peak and a tent at the base, if they are in view.
+        int[] peak = grid.getStatistics().getMaxIndex();
+        int[] base = grid.getStatistics().getMinIndex();
+
+        drawImage(canvas, observer, getFlag(), (int) Math.round(view.getX(peak[1] + 0.5)),
+                (int) Math.round(view.getY(peak[0] + 0.5)), view.getWidth(), view.getHeight());
+        drawImage(canvas, observer, getTent(), (int) Math.round(view.getX(base[1] + 0.5)),
+                (int) Math.round(view.getY(base[0] + 0.5)), view.getWidth(), view.getHeight());
+    }
+
+    /**
+     * Draw the whole scene over the background into a new image.
+     *
+     * @return BufferedImage
+     */
+    public BufferedImage compose() {
+        checkInCore("A map of the whole grid");
+
+        BufferedImage image = new BufferedImage(cols, rows, BufferedImage.TYPE_INT_RGB);
+        Graphics2D canvas = image.createGraphics();
+
+        canvas.setColor(Colors.background);
+        canvas.fillRect(0, 0, cols, rows);
+        draw(canvas, null);
+        canvas.dispose();
+
+        return image;
+    }
+
+    /**
+     * Get the map of the terrain, rendering it on first use.
+     *
+     * Pixels are written straight into the image's backing array rather than
+     * drawn one at a time through the canvas.
+     *
+     * @return BufferedImage
+     */
+    public synchronized BufferedImage getTerrain() {
+        int layer = this.layer;
+
+        checkInCore("A map of the whole grid");
+
+        if (terrains[layer] == null) {
+            try (Stage stage = Metrics.start("terrain")) {
+                stage.setCells((long) rows * cols);
+
+                BufferedImage image = new BufferedImage(cols, rows, BufferedImage.TYPE_INT_ARGB);
+                int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
+                if (layer == Stencil.ELEVATION) {
+                    Parallel.forEach(rows, (from, to) -> {
+                        int[] row = new int[cols];
+
+                        for (int i = from; i < to; i++) {
+                            drawRow(grid.copyRow(i, row), i, pixels);
+                        }
+                    });
+                } else {
+                    Stencil stencil = getStencil();
+
+                    Parallel.forEach(rows, (from, to) -> {
+                        for (int i = from; i < to; i++) {
+                            for (int j = 0; j < cols; j++) {
+                                pixels[i * cols + j] = stencil.getColor(layer, i, j);
+                            }
+                        }
+                    });
+                }
+
+                terrains[layer] = image;
+            }
+        }
+
+        return terrains[layer];
+    }
+
+    /**
+     * Get the paths drawn over the map, rendering them whenever the stored
+     * paths have changed.
+     *
+     * @return BufferedImage
+     */
+    public BufferedImage getOverlay() {
+        return getOverlay(rows, drawn -> true);
+    }
+
+    /**
+     * Get the paths drawn over the map, rendering them in batches of a given
+     * number of paths whenever the stored paths have changed.
+     *
+     * After each batch, the listener is given the number of paths drawn so
+     * far, and may stop the rendering by returning false. The overlay is then
+     * left unfinished, and rendered again from the start on its next use.
+     *
+     * @param batch
+     * @param listener
+     * @return BufferedImage
+     */
+    public synchronized BufferedImage getOverlay(int batch, IntPredicate listener) {
+        checkInCore("The path overlay");
+
+        PathStore paths = getPaths();
+
+        if (overlay == null || overlayPaths != paths || overlayHeat != heat) {
+            try (Stage stage = Metrics.start("overlay")) {
+                stage.setCells((long) rows * cols).setPaths(rows);
+
+                BufferedImage image = new BufferedImage(cols, rows, BufferedImage.TYPE_INT_ARGB);
+                int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+                int[] positions = new int[cols];
+
+                overlay = image;
+                overlayPaths = null;
+
+                if (density == null || !density.isFor(paths)) {
+                    // Count how many paths cross each position, drawing them after each batch.
+                    Density counts = new Density(paths, rows, cols);
+
+                    for (int start = 0; start < rows; start += batch) {
+                        counts.add(start, Math.min(start + batch, rows));
+                        drawDensity(counts, pixels);
+                        overlayVersion++;
+
+                        if (!listener.test(Math.min(start + batch, rows))) {
+                            return image;
+                        }
+                    }
+
+                    density = counts;
+                } else {
+                    drawDensity(density, pixels);
+                }
+
+                // Draw the path of least total resistance.
+                drawLowestElevPath(getBest().getPositions(positions), Colors.bestPath, pixels);
+
+                // Draw the path of greatest total resistance.
+                drawLowestElevPath(getWorst().getPositions(positions), Colors.worstPath, pixels);
+
+                // Draw the point-to-point route.
+                if (getTrail() != null) {
+                    for (int cell : getTrail().getCells()) {
+                        pixels[cell] = Colors.routePath.getRGB();
+                    }
+                }
+
+                overlayVersion++;
+                overlayPaths = paths;
+            }
+        }
+
+        return overlay;
+    }
+
+    /**
+     * Get a tile of the map at a given level, rendering it if it is not among
+     * the most recently drawn.
+     *
+     * Given an observer, a missing tile is rendered in the background instead
+     * and null is returned. The observer is told once the tile is ready, unless
+     * it has since gone out of view and no later frame has asked for it.
+     *
+     * @param level
+     * @param tileRow
+     * @param tileCol
+     * @param observer
+     * @param frame
+     * @return BufferedImage
+     */
+    private BufferedImage getTile(int level, int tileRow, int tileCol, ImageObserver observer, long frame) {
+        return getTile(layer, summary, level, tileRow, tileCol, observer, frame);
+    }
+
+    /**
+     * Get a tile of the map for a given layer and summary at a given level,
+     * rendering it if it is not among the most recently drawn. This does not
+     * depend on the layer and summary shown in a window.
+     *
+     * @param layer
+     * @param summary
+     * @param level
+     * @param tileRow
+     * @param tileCol
+     * @return BufferedImage
+     */
+    public BufferedImage getTile(int layer, int summary, int level, int tileRow, int tileCol) {
+        return getTile(layer, summary, level, tileRow, tileCol, null, 0);
+    }
+
+    /**
+     * Get a tile of the map for a given layer and summary at a given level, in
+     * the background if an observer is given.
+     *
+     * @param layer
+     * @param summary
+     * @param level
+     * @param tileRow
+     * @param tileCol
+     * @param observer
+     * @param frame
+     * @return BufferedImage
+     */
+    private BufferedImage getTile(int layer, int summary, int level, int tileRow, int tileCol,
+            ImageObserver observer, long frame) {
+        int mode = layer == Stencil.ELEVATION ? summary : Pyramid.MAX + layer;
+        long key = (((long) (level * (Pyramid.MAX + Stencil.LAYERS) + mode) << 21 | tileRow) << 21) | tileCol;
+
+        synchronized (tiles) {
+            BufferedImage tile = tiles.get(key);
+
+            if (tile != null) {
+                return tile;
+            }
+
+            if (observer != null && pending.put(key, frame) != null) {
+                return null;
+            }
+        }
+
+        if (observer == null) {
+            return putTile(key, renderTile(layer, summary, level, tileRow, tileCol));
+        }
+
+        RENDERER.execute(() -> {
+            // Skip tiles that no frame has asked for since the one before last.
+            synchronized (tiles) {
+                if (pending.get(key) < this.frame - 1) {
+                    pending.remove(key);
+                    return;
+                }
+            }
+
+            BufferedImage tile = renderTile(layer, summary, level, tileRow, tileCol);
+
+            synchronized (tiles) {
+                putTile(key, tile);
+                pending.remove(key);
+            }
+
+            observer.imageUpdate(tile, ImageObserver.ALLBITS, 0, 0, tile.getWidth(), tile.getHeight());
+        });
+
+        return null;
+    }
+
+    /**
+     * Keep a rendered tile among the most recently drawn.
+     *
+     * @param key
+     * @param tile
+     * @return BufferedImage
+     */
+    private BufferedImage putTile(long key, BufferedImage tile) {
+        synchronized (tiles) {
+            tiles.put(key, tile);
+        }
+
+        return tile;
+    }
+
+    /**
+     * Render a tile of the map at a given level. Derived layers take the value
+     * of the first grid cell under each level cell.
+     *
+     * @param layer
+     * @param summary
+     * @param level
+     * @param tileRow
+     * @param tileCol
+     * @return BufferedImage
+     */
+    private BufferedImage renderTile(int layer, int summary, int level, int tileRow, int tileCol) {
+        Pyramid pyramid = getPyramid();
+        int top = tileRow * TILE_SIZE;
+        int left = tileCol * TILE_SIZE;
+        int height = Math.min(TILE_SIZE, pyramid.getRows(level) - top);
+        int width = Math.min(TILE_SIZE, pyramid.getCols(level) - left);
+        BufferedImage tile = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt) tile.getRaster().getDataBuffer()).getData();
+
+        try (Stage stage = Metrics.start("tiles")) {
+            stage.setCells((long) width * height);
+
+            if (layer == Stencil.ELEVATION) {
+                for (int i = 0; i < height; i++) {
+                    for (int j = 0; j < width; j++) {
+                        pixels[i * width + j] = palette.getColor(pyramid.get(summary, level, top + i, left + j));
+                    }
+                }
+            } else {
+                Stencil stencil = getStencil();
+
+                for (int i = 0; i < height; i++) {
+                    for (int j = 0; j < width; j++) {
+                        pixels[i * width + j] = stencil.getColor(layer, (top + i) << level, (left + j) << level);
+                    }
+                }
+            }
+        }
+
+        return tile;
+    }
+
+    /**
+     * Get a given version of the overlay at a given level, halving it as often
+     * as needed.
+     *
+     * Each pixel of a level keeps the most opaque of the four pixels below it,
+     * so that the paths stay visible however far the view is zoomed out.
+     *
+     * @param overlay
+     * @param version
+     * @param level
+     * @return BufferedImage
+     */
+    private BufferedImage getOverlay(BufferedImage overlay, int version, int level) {
+        synchronized (overlayLevels) {
+            if (overlayLevels.isEmpty() || overlayLevels.get(0) != overlay || overlayLevelsVersion != version) {
+                overlayLevels.clear();
+                overlayLevels.add(overlay);
+                overlayLevelsVersion = version;
+            }
+
+            return getOverlayLevel(level);
+        }
+    }
+
+    /**
+     * Get a level of the overlay, halving the last level built as often as
+     * needed.
+     *
+     * @param level
+     * @return BufferedImage
+     */
+    private BufferedImage getOverlayLevel(int level) {
+        while (overlayLevels.size() <= level) {
+            BufferedImage below = overlayLevels.get(overlayLevels.size() - 1);
+            int belowWidth = below.getWidth();
+            int belowHeight = below.getHeight();
+            int width = (belowWidth + 1) / 2;
+            int height = (belowHeight + 1) / 2;
+            int[] source = ((DataBufferInt) below.getRaster().getDataBuffer()).getData();
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
+            Parallel.forEach(height, (from, to) -> {
+                for (int i = from; i < to; i++) {
+                    for (int j = 0; j < width; j++) {
+                        int pixel = 0;
+
+                        for (int row = i * 2; row < Math.min(i * 2 + 2, belowHeight); row++) {
+                            for (int col = j * 2; col < Math.min(j * 2 + 2, belowWidth); col++) {
+                                int value = source[row * belowWidth + col];
+
+                                if (value >>> 24 > pixel >>> 24) {
+                                    pixel = value;
+                                }
+                            }
+                        }
+
+                        pixels[i * width + j] = pixel;
+                    }
+                }
+            });
+
+            overlayLevels.add(image);
+        }
+
+        return overlayLevels.get(level);
+    }
+
+    /**
+     * Check that the grid is held in memory, before building something with a
+     * value for each of its cells.
+     *
+     * @param name
+     * @return void
+     */
+    private void checkInCore(String name) {
+        if (grid.isOutOfCore()) {
+            throw new IllegalArgumentException(String.format("%s is not available for tiled grids.", name));
+        }
+    }
+
+    /**
+     * Draw the values of a given row from the matrix into an array of pixels.
+     *
+     * @param values
+     * @param row
+     * @param pixels
+     * @return void
+     */
+    private void drawRow(int[] values, int row, int[] pixels) {
+        int offset = row * cols;
+
+        for (int i = 0; i < cols; i++) {
+            pixels[offset + i] = palette.getColor(values[i]);
+        }
+    }
+
+    /**
+     * Draw the number of paths crossing each position into an array of pixels,
+     * either as translucent paths or as a heat layer, and note which.
+     *
+     * @param density
+     * @param pixels
+     * @return void
+     */
+    private void drawDensity(Density density, int[] pixels) {
+        boolean heat = this.heat;
+        int[] shades = heat ? getHeatShades(density.getMax()) : getPathShades();
+        int[] counts = density.getCounts();
+
+        for (int i = 0; i < counts.length; i++) {
+            pixels[i] = shades[counts[i]];
+        }
+
+        overlayHeat = heat;
+    }
+
+    /**
+     * Look up the color of a position crossed by each possible number of
+     * translucent paths.
+     *
+     * @return int[]
+     */
+    private int[] getPathShades() {
+        Color color = Colors.normalPath;
+        float alpha = color.getAlpha() / 255f;
+        int[] shades = new int[rows + 1];
+
+        // Drawing a translucent color n times over the same spot is the same
+        // as drawing it once with an opacity of 1 - (1 - alpha)^n.
+        for (int i = 1; i <= rows; i++) {
+            int opacity = Math.round(255 * (1 - (float) Math.pow(1 - alpha, i)));
+
+            shades[i] = (opacity << 24) | (color.getRGB() & 0xFFFFFF);
+        }
+
+        return shades;
+    }
+
+    /**
+     * Look up the color of the heat layer for each possible number of paths,
+     * up to a given highest count. Colors run from low to high traffic on a
+     * log scale, so that quiet corridors still show beside the busiest ones.
+     *
+     * @param max
+     * @return int[]
+     */
+    private int[] getHeatShades(int max) {
+        int[] shades = new int[max + 1];
+        double scale = Math.log1p(max);
+
+        for (int i = 1; i <= max; i++) {
+            float blend = (float) (Math.log1p(i) / scale);
+
+            shades[i] = (blend < 0.5f ? Colors.interpolateColor(Colors.lowTraffic, Colors.midTraffic, blend * 2)
+                    : Colors.interpolateColor(Colors.midTraffic, Colors.highTraffic, blend * 2 - 1)).getRGB();
+        }
+
+        return shades;
+    }
+
+    /**
+     * Draw a path of "least resistance" through the given row positions into
+     * an array of pixels.
+     *
+     * @param positions
+     * @param color
+     * @param pixels
+     * @return void
+     */
+    private void drawLowestElevPath(int[] positions, Color color, int[] pixels) {
+        for (int i = 0; i < cols; i++) {
+            pixels[positions[i] * cols + i] = color.getRGB();
+        }
+    }
+
+    /**
+     * Draw a given image on a canvas of a given size, standing on a given
+     * point of the canvas.
+     *
+     * @param canvas
+     * @param observer
+     * @param img
+     * @param x
+     * @param y
+     * @param canvasWidth
+     * @param canvasHeight
+     * @return void
+     */
+    private void drawImage(Graphics2D canvas, ImageObserver observer, BufferedImage img, int x, int y,
+            int canvasWidth, int canvasHeight) {
+        // Couldn't read the image, or the point is out of view. No error necessary.
+        if (img == null || x < 0 || y < 0 || x >= canvasWidth || y >= canvasHeight) {
+            return;
+        }
+
+        // Give the image space at the edge of the canvas.
+        int padding = 3;
+
+        // Get the dimensions of the image.
+        int width = img.getWidth();
+        int height = img.getHeight();
+
+        // Account for the dimensions of the image during positioning.
+        int imgX = forceRange(x - Math.round(width / 2), padding, canvasWidth - 1 - width - padding);
+        int imgY = forceRange(y - height, padding, canvasHeight - 1 - height - padding);
+
+        // Position the image on the canvas.
+        canvas.drawImage(img, imgX, imgY, observer);
+    }
+
+    /**
+     * Get the image of the flag, reading it on first use.
+     *
+     * @return BufferedImage
+     */
+    private static synchronized BufferedImage getFlag() {
+        if (flag == null) {
+            flag = readImage("flag.png");
+        }
+
+        return flag;
+    }
+
+    /**
+     * Get the image of the tent, reading it on first use.
+     *
+     * @return BufferedImage
+     */
+    private static synchronized BufferedImage getTent() {
+        if (tent == null) {
+            tent = readImage("tent.png");
+        }
+
+        return tent;
+    }
+
+    /**
+     * Read a given image file.
+     *
+     * @param file
+     * @return BufferedImage
+     */
+    private static BufferedImage readImage(String file) {
+        try {
+            return ImageIO.read(new File(file));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Get the number of bytes taken by the pixels of an image, if there is one.
+     *
+     * @param image
+     * @return long
+     */
+    private static long getMemoryUsage(BufferedImage image) {
+        return image == null ? 0 : (long) image.getWidth() * image.getHeight() * Integer.BYTES;
+    }
+
+    /**
+     * Force a given number into a range.
+     *
+     * @param value
+     * @param min
+     * @param max
+     * @return int
+     */
+    private static int forceRange(int value, int min, int max) {
+        return Math.min(Math.max(value, min), max);
+    }
+}
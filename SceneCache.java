@@ -0,0 +1,319 @@
+import java.util.Map;
+import java.util.Set;
+import java.util.Iterator;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.IdentityHashMap;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * SceneCache class.
+ *
+ * Keeps the scenes of recently used files in memory, so that the grid, its
+ * statistics, its paths and everything drawn from them are only computed once
+ * however often they are asked for. Each scene can also keep encoded images of
+ * itself, such as PNG tiles. Scenes build most of their parts on first use,
+ * so the memory each one takes is measured again whenever it is charged, and
+ * scenes are evicted least recently used first while the grids, the parts and
+ * the images together go over a budget. The scene being charged is never
+ * evicted, but its images are dropped, oldest first, if it does not fit on
+ * its own. Each scene is loaded only once, even when many threads ask for it
+ * at the same time, and scenes of the same file with different path settings
+ * share one grid, which is only counted once.
+ */
+public class SceneCache {
+
+    /**
+     * The most memory the cached scenes may take, in bytes.
+     */
+    private long budget;
+
+    /**
+     * The scenes, loaded or loading, by file and path settings, from least to
+     * most recently used.
+     */
+    private Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * A cached scene.
+     */
+    private static class Entry {
+
+        /**
+         * The file the scene was loaded from.
+         */
+        private String file;
+
+        /**
+         * The task loading the scene.
+         */
+        private FutureTask<Scene> task;
+
+        /**
+         * The scene, once loaded.
+         */
+        private Scene scene;
+
+        /**
+         * The memory taken by the parts of the scene when it was last charged,
+         * in bytes, not counting its grid.
+         */
+        private long bytes;
+
+        /**
+         * The encoded images of the scene, by name, from least to most
+         * recently used.
+         */
+        private Map<String, byte[]> images = new LinkedHashMap<>(16, 0.75f, true);
+
+        /**
+         * The memory taken by the encoded images, in bytes.
+         */
+        private long imageBytes;
+    }
+
+    /**
+     * SceneCache class constructor.
+     *
+     * @param budget
+     * @return self
+     */
+    public SceneCache(long budget) {
+        if (budget <= 0) {
+            throw new IllegalArgumentException("The cache budget must be a positive number of megabytes.");
+        }
+
+        this.budget = budget;
+    }
+
+    /**
+     * Get the scene of a file for given path settings, loading it if it is not
+     * cached.
+     *
+     * @param file
+     * @param flag
+     * @param optimal
+     * @param seed
+     * @return Scene
+     * @throws IOException
+     */
+    public Scene get(String file, boolean flag, boolean optimal, long seed) throws IOException {
+        String key = file + "|" + flag + "|" + optimal + "|" + seed;
+        Entry entry;
+        boolean loading = false;
+
+        synchronized (this) {
+            entry = entries.get(key);
+
+            if (entry == null) {
+                entry = new Entry();
+                entry.file = file;
+                entry.task = new FutureTask<>(() -> new Scene(getGrid(file), flag, optimal, seed));
+                entries.put(key, entry);
+                loading = true;
+            }
+        }
+
+        // Load the scene on this thread, while any others asking for it wait.
+        if (loading) {
+            entry.task.run();
+            admit(key, entry);
+        }
+
+        try {
+            return entry.task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Measure the memory taken by a cached scene again, after it may have
+     * built more of its parts, evicting other scenes until it fits.
+     *
+     * @param scene
+     * @return void
+     */
+    public void charge(Scene scene) {
+        long bytes = scene.getMemoryUsage();
+
+        synchronized (this) {
+            Entry entry = find(scene);
+
+            if (entry != null) {
+                entry.bytes = bytes;
+                evict(entry);
+            }
+        }
+    }
+
+    /**
+     * Get an encoded image of a cached scene, or null if it is not cached.
+     *
+     * @param scene
+     * @param name
+     * @return byte[]
+     */
+    public synchronized byte[] getImage(Scene scene, String name) {
+        Entry entry = find(scene);
+
+        return entry != null ? entry.images.get(name) : null;
+    }
+
+    /**
+     * Keep an encoded image of a cached scene, evicting other scenes or older
+     * images until it fits.
+     *
+     * @param scene
+     * @param name
+     * @param image
+     * @return void
+     */
+    public synchronized void putImage(Scene scene, String name, byte[] image) {
+        Entry entry = find(scene);
+
+        if (entry == null) {
+            return;
+        }
+
+        byte[] previous = entry.images.put(name, image);
+
+        entry.imageBytes += image.length - (previous != null ? previous.length : 0);
+        evict(entry);
+    }
+
+    /**
+     * Get the number of scenes loaded or loading.
+     *
+     * @return int
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Get the estimated memory taken by the loaded scenes, in bytes.
+     *
+     * @return long
+     */
+    public synchronized long getMemoryUsage() {
+        Set<ElevationGrid> grids = Collections.newSetFromMap(new IdentityHashMap<>());
+        long bytes = 0;
+
+        for (Entry entry : entries.values()) {
+            if (entry.scene != null) {
+                bytes += entry.bytes + entry.imageBytes;
+
+                if (grids.add(entry.scene.getGrid())) {
+                    bytes += entry.scene.getGrid().getMemoryUsage();
+                }
+            }
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Get the grid of a file from any cached scene of it, or load it.
+     *
+     * @param file
+     * @return ElevationGrid
+     * @throws Exception
+     */
+    private ElevationGrid getGrid(String file) throws Exception {
+        synchronized (this) {
+            for (Entry entry : entries.values()) {
+                if (entry.file.equals(file) && entry.scene != null) {
+                    return entry.scene.getGrid();
+                }
+            }
+        }
+
+        return Matrix.load(file);
+    }
+
+    /**
+     * Count a newly loaded scene against the budget, evicting the least
+     * recently used scenes until it fits, or forget it if it failed to load.
+     *
+     * @param key
+     * @param entry
+     * @return void
+     */
+    private void admit(String key, Entry entry) {
+        Scene scene;
+
+        try {
+            scene = entry.task.get();
+        } catch (Exception e) {
+            synchronized (this) {
+                entries.remove(key, entry);
+            }
+
+            return;
+        }
+
+        long bytes = scene.getMemoryUsage();
+
+        synchronized (this) {
+            entry.scene = scene;
+            entry.bytes = bytes;
+            evict(entry);
+        }
+    }
+
+    /**
+     * Find the entry of a loaded scene, or null if it has been evicted.
+     *
+     * @param scene
+     * @return Entry
+     */
+    private Entry find(Scene scene) {
+        for (Entry entry : entries.values()) {
+            if (entry.scene == scene) {
+                return entry;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Evict the least recently used scenes other than a given one while the
+     * cache is over its budget, then the oldest images of the given scene.
+     *
+     * @param current
+     * @return void
+     */
+    private void evict(Entry current) {
+        Iterator<Entry> eldest = entries.values().iterator();
+
+        while (getMemoryUsage() > budget && eldest.hasNext()) {
+            Entry entry = eldest.next();
+
+            if (entry != current && entry.scene != null) {
+                eldest.remove();
+            }
+        }
+
+        Iterator<byte[]> images = current.images.values().iterator();
+
+        while (getMemoryUsage() > budget && images.hasNext()) {
+            current.imageBytes -= images.next().length;
+            images.remove();
+        }
+    }
+}
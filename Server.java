@@ -0,0 +1,505 @@
+import java.io.File;
+import java.util.Map;
+import java.util.List;
+import java.util.Locale;
+import java.util.HashMap;
+import java.util.TreeMap;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import javax.imageio.ImageIO;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * Server class.
+ *
+ * Answers queries about a set of files over HTTP on the local machine, keeping
+ * each file's scene in memory between queries so that nothing is loaded or
+ * computed twice. Requests are handled on virtual threads where the runtime
+ * has them. Every endpoint takes the name of a file as "dataset":
+ *
+ *   /datasets                        the files being served
+ *   /extremes?dataset=...            the lowest and highest points, overall
+ *                                    or in a region given by top, left,
+ *                                    bottom and right
+ *   /paths?dataset=...               the paths of least and most resistance,
+ *                                    for an optional seed, optimal and
+ *                                    disableMiddlePriority
+ *   /tile?dataset=...&level=&row=&col=
+ *                                    a PNG tile of the map, for an optional
+ *                                    layer and summary
+ */
+public class Server {
+
+    /**
+     * The names of the values each level cell of a zoomed-out map can show.
+     */
+    private static final String[] SUMMARIES = { "mean", "min", "max" };
+
+    /**
+     * The files being served, by name.
+     */
+    private Map<String, String> datasets = new TreeMap<>();
+
+    /**
+     * The scenes of the files.
+     */
+    private SceneCache scenes;
+
+    /**
+     * Whether the "--disable-middle-priority" command-line switch is set.
+     */
+    private boolean flag;
+
+    /**
+     * Whether the best and worst paths are the exact optima by default.
+     */
+    private boolean optimal;
+
+    /**
+     * The random seed for the paths, unless a query gives one.
+     */
+    private long seed;
+
+    /**
+     * Server class constructor.
+     *
+     * Each of the files may also be a directory, in which case every grid file
+     * in it is served.
+     *
+     * @param files
+     * @param flag
+     * @param optimal
+     * @param seed
+     * @param budget
+     * @return self
+     */
+    public Server(List<String> files, boolean flag, boolean optimal, long seed, long budget) {
+        this.scenes = new SceneCache(budget);
+        this.flag = flag;
+        this.optimal = optimal;
+        this.seed = seed;
+
+        for (String file : files) {
+            File[] children = new File(file).listFiles((directory, name) -> name.endsWith(".dat")
+                    || name.endsWith(".elev") || name.endsWith(".tiles"));
+
+            if (children == null) {
+                datasets.put(new File(file).getName(), file);
+                continue;
+            }
+
+            for (File child : children) {
+                datasets.put(child.getName(), child.getPath());
+            }
+        }
+    }
+
+    /**
+     * Start answering queries on a given port of the local machine.
+     *
+     * @param port
+     * @return HttpServer
+     * @throws IOException
+     */
+    public HttpServer start(int port) throws IOException {
+        // Send small responses at once rather than waiting to fill a packet.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+
+        server.setExecutor(Parallel.newVirtualExecutor());
+        server.createContext("/datasets", handle("datasets", this::listDatasets));
+        server.createContext("/extremes", handle("extremes", this::findExtremes));
+        server.createContext("/paths", handle("paths", this::findPaths));
+        server.createContext("/tile", handle("tile", this::drawTile));
+        server.start();
+
+        Console.out(String.format("Serving %d datasets at http://localhost:%d/", datasets.size(),
+                server.getAddress().getPort()));
+
+        return server;
+    }
+
+    /**
+     * An endpoint, answering a query with a response.
+     */
+    private interface Endpoint {
+
+        /**
+         * Answer a query.
+         *
+         * @param query
+         * @return Response
+         * @throws IOException
+         */
+        Response answer(Map<String, String> query) throws IOException;
+    }
+
+    /**
+     * A response: a status, a content type and a body.
+     */
+    private static class Response {
+
+        /**
+         * The HTTP status code.
+         */
+        private int status;
+
+        /**
+         * The content type of the body.
+         */
+        private String type;
+
+        /**
+         * The body.
+         */
+        private byte[] body;
+
+        /**
+         * Response class constructor.
+         *
+         * @param status
+         * @param type
+         * @param body
+         * @return self
+         */
+        private Response(int status, String type, byte[] body) {
+            this.status = status;
+            this.type = type;
+            this.body = body;
+        }
+
+        /**
+         * Create a response with a JSON body.
+         *
+         * @param status
+         * @param json
+         * @return Response
+         */
+        private static Response json(int status, String json) {
+            return new Response(status, "application/json", json.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Create a response reporting an error.
+         *
+         * @param status
+         * @param message
+         * @return Response
+         */
+        private static Response error(int status, String message) {
+            return json(status, String.format("{\"error\":\"%s\"}", escape(message)));
+        }
+    }
+
+    /**
+     * Wrap an endpoint as a handler that parses the query, times the request
+     * and reports any error as JSON. Unexpected errors are logged and answered
+     * with a generic message, and every exchange is closed once answered.
+     *
+     * @param name
+     * @param endpoint
+     * @return HttpHandler
+     */
+    private HttpHandler handle(String name, Endpoint endpoint) {
+        return exchange -> {
+            Stage stage = Metrics.start("serve " + name);
+            Response response;
+
+            try {
+                if (!exchange.getRequestMethod().equals("GET")) {
+                    response = Response.error(405, "Only GET requests are supported.");
+                } else {
+                    response = endpoint.answer(parseQuery(exchange.getRequestURI().getRawQuery()));
+                }
+            } catch (IllegalArgumentException e) {
+                response = Response.error(400, e.getMessage());
+            } catch (IOException e) {
+                response = Response.error(500, "There was a problem opening or reading the file.");
+            } catch (Throwable e) {
+                // Keep the details in the log rather than sending them out.
+                Console.out(String.format("There was a problem answering %s: %s", exchange.getRequestURI(), e));
+                response = Response.error(500, "There was a problem answering the request.");
+            } finally {
+                stage.close();
+            }
+
+            try {
+                send(exchange, response);
+            } finally {
+                exchange.close();
+            }
+        };
+    }
+
+    /**
+     * List the files being served.
+     *
+     * @param query
+     * @return Response
+     */
+    private Response listDatasets(Map<String, String> query) {
+        StringBuilder json = new StringBuilder("{\"tileSize\":" + Scene.TILE_SIZE + ",\"datasets\":[");
+
+        for (String name : datasets.keySet()) {
+            json.append(json.charAt(json.length() - 1) == '[' ? "" : ",").append('"').append(escape(name)).append('"');
+        }
+
+        return Response.json(200, json.append("]}").toString());
+    }
+
+    /**
+     * Find the lowest and highest points of a file, overall or in a region.
+     *
+     * @param query
+     * @return Response
+     * @throws IOException
+     */
+    private Response findExtremes(Map<String, String> query) throws IOException {
+        Scene scene = getScene(query);
+        ElevationGrid grid = scene.getGrid();
+        String dataset = escape(query.get("dataset"));
+
+        if (!query.containsKey("top") && !query.containsKey("left") && !query.containsKey("bottom")
+                && !query.containsKey("right")) {
+            Statistics statistics = grid.getStatistics();
+            int[] min = statistics.getMinIndex();
+            int[] max = statistics.getMaxIndex();
+
+            return Response.json(200, String.format(Locale.ROOT, "{\"dataset\":\"%s\",\"rows\":%d,\"cols\":%d,"
+                    + "\"min\":%d,\"minRow\":%d,\"minCol\":%d,\"max\":%d,\"maxRow\":%d,\"maxCol\":%d,\"mean\":%.3f}",
+                    dataset, grid.getRows(), grid.getCols(), statistics.getMin(), min[0], min[1],
+                    statistics.getMax(), max[0], max[1], statistics.getMean()));
+        }
+
+        int top = getInt(query, "top", 0, grid.getRows() - 1);
+        int left = getInt(query, "left", 0, grid.getCols() - 1);
+        int bottom = getInt(query, "bottom", top, grid.getRows() - 1);
+        int right = getInt(query, "right", left, grid.getCols() - 1);
+        RangeIndex index = scene.getRangeIndex();
+        int[] min = index.getMinIndex(top, left, bottom, right);
+        int[] max = index.getMaxIndex(top, left, bottom, right);
+
+        scenes.charge(scene);
+
+        return Response.json(200, String.format(Locale.ROOT, "{\"dataset\":\"%s\",\"top\":%d,\"left\":%d,"
+                + "\"bottom\":%d,\"right\":%d,\"min\":%d,\"minRow\":%d,\"minCol\":%d,\"max\":%d,\"maxRow\":%d,"
+                + "\"maxCol\":%d}", dataset, top, left, bottom, right, grid.get(min[0], min[1]), min[0], min[1],
+                grid.get(max[0], max[1]), max[0], max[1]));
+    }
+
+    /**
+     * Find the paths of least and most resistance of a file, with the row of
+     * each in every column.
+     *
+     * @param query
+     * @return Response
+     * @throws IOException
+     */
+    private Response findPaths(Map<String, String> query) throws IOException {
+        Scene scene = getScene(query);
+        int[] positions = new int[scene.getGrid().getCols()];
+        String least = describe(scene.getBest(), positions);
+        String most = describe(scene.getWorst(), positions);
+
+        scenes.charge(scene);
+
+        return Response.json(200, String.format("{\"dataset\":\"%s\",\"least\":%s,\"most\":%s}",
+                escape(query.get("dataset")), least, most));
+    }
+
+    /**
+     * Draw a tile of the map of a file as a PNG, reusing it if it was drawn
+     * recently.
+     *
+     * @param query
+     * @return Response
+     * @throws IOException
+     */
+    private Response drawTile(Map<String, String> query) throws IOException {
+        Scene scene = getScene(query);
+        Pyramid pyramid = scene.getPyramid();
+        int level = getInt(query, "level", 0, pyramid.getLevels() - 1);
+        int row = getInt(query, "row", 0, (pyramid.getRows(level) - 1) / Scene.TILE_SIZE);
+        int col = getInt(query, "col", 0, (pyramid.getCols(level) - 1) / Scene.TILE_SIZE);
+        int layer = Stencil.parseLayer(query.getOrDefault("layer", "elevation"));
+        int summary = parseSummary(query.getOrDefault("summary", "mean"));
+        String name = String.format("tile|%d|%d|%d|%d|%d", layer, summary, level, row, col);
+        byte[] png = scenes.getImage(scene, name);
+
+        if (png == null) {
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+            ImageIO.write(scene.getTile(layer, summary, level, row, col), "png", stream);
+            png = stream.toByteArray();
+
+            scenes.charge(scene);
+            scenes.putImage(scene, name, png);
+        }
+
+        return new Response(200, "image/png", png);
+    }
+
+    /**
+     * Get the scene of the file named in a query, for the path settings given
+     * in the query or the defaults.
+     *
+     * @param query
+     * @return Scene
+     * @throws IOException
+     */
+    private Scene getScene(Map<String, String> query) throws IOException {
+        String file = datasets.get(query.getOrDefault("dataset", ""));
+
+        if (file == null) {
+            throw new IllegalArgumentException("Unknown dataset: " + query.getOrDefault("dataset", ""));
+        }
+
+        long seed;
+
+        try {
+            seed = Long.parseLong(query.getOrDefault("seed", String.valueOf(this.seed)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("The seed must be an integer.");
+        }
+
+        return scenes.get(file, Boolean.parseBoolean(query.getOrDefault("disableMiddlePriority",
+                String.valueOf(flag))), Boolean.parseBoolean(query.getOrDefault("optimal",
+                String.valueOf(optimal))), seed);
+    }
+
+    /**
+     * Describe a route as JSON.
+     *
+     * @param route
+     * @param positions
+     * @return String
+     */
+    private static String describe(Route route, int[] positions) {
+        StringBuilder json = new StringBuilder(String.format("{\"change\":%d,\"row\":%d,\"rows\":[",
+                route.getTotal(), route.getStart()));
+
+        route.getPositions(positions);
+
+        for (int i = 0; i < positions.length; i++) {
+            json.append(i == 0 ? "" : ",").append(positions[i]);
+        }
+
+        return json.append("]}").toString();
+    }
+
+    /**
+     * Get an integer from a query, which must lie between given bounds.
+     *
+     * @param query
+     * @param name
+     * @param min
+     * @param max
+     * @return int
+     */
+    private static int getInt(Map<String, String> query, String name, int min, int max) {
+        try {
+            int value = Integer.parseInt(query.getOrDefault(name, ""));
+
+            if (value >= min && value <= max) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // Fall through to the error below.
+        }
+
+        throw new IllegalArgumentException(String.format("The %s must be an integer from %d to %d.", name, min, max));
+    }
+
+    /**
+     * Find the summary with a given name.
+     *
+     * @param name
+     * @return int
+     */
+    private static int parseSummary(String name) {
+        for (int i = 0; i < SUMMARIES.length; i++) {
+            if (SUMMARIES[i].equals(name)) {
+                return i;
+            }
+        }
+
+        throw new IllegalArgumentException("The summary must be one of mean, min or max.");
+    }
+
+    /**
+     * Parse the parameters of a query string.
+     *
+     * @param query
+     * @return Map<String, String>
+     */
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> parameters = new HashMap<>();
+
+        if (query == null) {
+            return parameters;
+        }
+
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf("=");
+
+            if (equals > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+
+        return parameters;
+    }
+
+    /**
+     * Escape a string for use inside a JSON string, including any control
+     * characters.
+     *
+     * @param value
+     * @return String
+     */
+    private static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if (c == '\\' || c == '"') {
+                escaped.append('\\').append(c);
+            } else if (c < ' ') {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+
+        return escaped.toString();
+    }
+
+    /**
+     * Send a response and close the exchange.
+     *
+     * @param exchange
+     * @param response
+     * @return void
+     * @throws IOException
+     */
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", response.type);
+        exchange.sendResponseHeaders(response.status, response.body.length);
+
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(response.body);
+        }
+    }
+}
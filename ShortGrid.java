@@ -0,0 +1,70 @@
+/**
+ * ShortGrid class.
+ *
+ * An elevation grid backed by a single on-heap array of 16-bit values.
+ */
+public class ShortGrid extends ElevationGrid {
+
+    /**
+     * The values of the grid in row-major order.
+     */
+    private short[] values;
+
+    /**
+     * ShortGrid class constructor.
+     *
+     * @param rows
+     * @param cols
+     * @param min
+     * @param max
+     * @param values
+     * @return self
+     */
+    public ShortGrid(int rows, int cols, int min, int max, short[] values) {
+        this.rows = rows;
+        this.cols = cols;
+        this.min = min;
+        this.max = max;
+        this.values = values;
+    }
+
+    /**
+     * Get the value at a given position in the grid.
+     *
+     * @param row
+     * @param col
+     * @return int
+     */
+    @Override
+    public int get(int row, int col) {
+        return values[row * cols + col];
+    }
+
+    /**
+     * Copy a given row of the grid into a buffer of at least getCols() values.
+     *
+     * @param row
+     * @param buffer
+     * @return int[]
+     */
+    @Override
+    public int[] copyRow(int row, int[] buffer) {
+        int offset = row * cols;
+
+        for (int i = 0; i < cols; i++) {
+            buffer[i] = values[offset + i];
+        }
+
+        return buffer;
+    }
+
+    /**
+     * Get the number of bytes the grid keeps on the heap.
+     *
+     * @return long
+     */
+    @Override
+    public long getMemoryUsage() {
+        return (long) values.length * Short.BYTES;
+    }
+}
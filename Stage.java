@@ -0,0 +1,176 @@
+import java.util.Map;
+import java.util.HashMap;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Stage class.
+ *
+ * Measures one run of a stage of work: how long it took, how many cells and
+ * paths it covered and how much memory all threads allocated meanwhile.
+ * Stages are meant to be used with try-with-resources, and closing one adds
+ * its run to the metrics and commits it as a Flight Recorder event.
+ *
+ * Allocation is counted across every thread, so stages that overlap (such as
+ * tiles rendered while the paths are walked) are each charged for both. A
+ * stage is only measured while the metrics are enabled or its event is being
+ * recorded, and otherwise costs next to nothing.
+ */
+public class Stage implements AutoCloseable {
+
+    /**
+     * The thread bean used to count allocated bytes, or null if the runtime
+     * cannot count them.
+     */
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    /**
+     * The name of the stage.
+     */
+    private String name;
+
+    /**
+     * The time the stage started, in nanoseconds.
+     */
+    private long start;
+
+    /**
+     * Whether the run is being measured.
+     */
+    private boolean measured;
+
+    /**
+     * The bytes allocated by each thread when the stage started, by id.
+     */
+    private Map<Long, Long> allocated;
+
+    /**
+     * The number of grid cells and paths covered.
+     */
+    private long cells;
+
+    private long paths;
+
+    /**
+     * The Flight Recorder event for the run.
+     */
+    private StageEvent event = new StageEvent();
+
+    /**
+     * Stage class constructor.
+     *
+     * @param name
+     * @return self
+     */
+    public Stage(String name) {
+        this.name = name;
+        this.measured = Metrics.isEnabled() || event.isEnabled();
+
+        if (!measured) {
+            return;
+        }
+
+        this.allocated = countAllocated();
+
+        event.begin();
+        start = System.nanoTime();
+    }
+
+    /**
+     * Set the number of grid cells covered.
+     *
+     * @param cells
+     * @return Stage
+     */
+    public Stage setCells(long cells) {
+        this.cells = cells;
+
+        return this;
+    }
+
+    /**
+     * Set the number of paths covered.
+     *
+     * @param paths
+     * @return Stage
+     */
+    public Stage setPaths(long paths) {
+        this.paths = paths;
+
+        return this;
+    }
+
+    /**
+     * End the run and record it.
+     *
+     * @return void
+     */
+    @Override
+    public void close() {
+        if (!measured) {
+            return;
+        }
+
+        long nanos = System.nanoTime() - start;
+        long bytes = 0;
+
+        event.end();
+
+        // Add up what each thread has allocated since the stage started.
+        if (allocated != null) {
+            for (Map.Entry<Long, Long> thread : countAllocated().entrySet()) {
+                bytes += thread.getValue() - allocated.getOrDefault(thread.getKey(), 0L);
+            }
+        }
+
+        if (Metrics.isEnabled()) {
+            Metrics.record(name, nanos, cells, paths, bytes);
+        }
+
+        if (event.shouldCommit()) {
+            event.name = name;
+            event.cells = cells;
+            event.paths = paths;
+            event.allocated = bytes;
+            event.commit();
+        }
+    }
+
+    /**
+     * Count the bytes allocated so far by each live thread, or return null if
+     * the runtime cannot count them.
+     *
+     * @return Map<Long, Long>
+     */
+    private static Map<Long, Long> countAllocated() {
+        if (THREADS == null) {
+            return null;
+        }
+
+        long[] ids = THREADS.getAllThreadIds();
+        long[] bytes = THREADS.getThreadAllocatedBytes(ids);
+        Map<Long, Long> counts = new HashMap<>();
+
+        for (int i = 0; i < ids.length; i++) {
+            if (bytes[i] >= 0) {
+                counts.put(ids[i], bytes[i]);
+            }
+        }
+
+        return counts;
+    }
+
+    /**
+     * Get the thread bean, if it can count the bytes allocated by threads.
+     *
+     * @return com.sun.management.ThreadMXBean
+     */
+    private static com.sun.management.ThreadMXBean threads() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        return threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled() ? threads : null;
+    }
+}
@@ -0,0 +1,45 @@
+import jdk.jfr.Name;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+
+/**
+ * StageEvent class.
+ *
+ * A JDK Flight Recorder event for one run of a stage of work. Events cost
+ * next to nothing unless a recording is running, for example one started
+ * with "java -XX:StartFlightRecording=filename=run.jfr App ...".
+ */
+@Name("elevation.Stage")
+@Label("Stage")
+@Category("Elevation Lab")
+@Description("One run of a stage of work, such as parsing a file or walking the paths")
+public class StageEvent extends Event {
+
+    /**
+     * The name of the stage.
+     */
+    @Label("Name")
+    public String name;
+
+    /**
+     * The number of grid cells covered.
+     */
+    @Label("Cells")
+    public long cells;
+
+    /**
+     * The number of paths covered.
+     */
+    @Label("Paths")
+    public long paths;
+
+    /**
+     * The memory allocated by all threads while the stage ran.
+     */
+    @Label("Allocated")
+    @DataAmount
+    public long allocated;
+}
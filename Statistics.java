@@ -0,0 +1,314 @@
+/**
+ * Statistics class.
+ *
+ * Summary statistics of an elevation grid, gathered in a single pass over the
+ * grid. Parts of the grid are summarized in parallel and merged, so that the
+ * result does not depend on the number of threads.
+ */
+public class Statistics {
+
+    /**
+     * The maximum number of bins in the histogram.
+     */
+    private static final int MAX_BINS = 1 << 16;
+
+    /**
+     * The minimum value in the grid.
+     */
+    private int min = Integer.MAX_VALUE;
+
+    /**
+     * The maximum value in the grid.
+     */
+    private int max = Integer.MIN_VALUE;
+
+    /**
+     * The first row holding the minimum value.
+     */
+    private int minRow = Integer.MAX_VALUE;
+
+    /**
+     * The first row holding the maximum value.
+     */
+    private int maxRow = Integer.MAX_VALUE;
+
+    /**
+     * The compound index of the first occurrence of the minimum value.
+     */
+    private int[] minIndex;
+
+    /**
+     * The compound index of the first occurrence of the maximum value.
+     */
+    private int[] maxIndex;
+
+    /**
+     * The sum of all values in the grid.
+     */
+    private long sum = 0;
+
+    /**
+     * The number of values in the grid.
+     */
+    private long count = 0;
+
+    /**
+     * The lowest value counted by the first histogram bin.
+     */
+    private int histogramStart;
+
+    /**
+     * The base-2 logarithm of the number of values counted by each bin.
+     */
+    private int binShift = 0;
+
+    /**
+     * The number of values falling into each histogram bin.
+     */
+    private int[] histogram;
+
+    /**
+     * Statistics class constructor, for an empty part of a grid.
+     *
+     * @param grid
+     * @return self
+     */
+    private Statistics(ElevationGrid grid) {
+        // Size the histogram from the range known when the grid was loaded.
+        histogramStart = grid.getMin();
+
+        while (((long) grid.getMax() - histogramStart) >> binShift >= MAX_BINS) {
+            binShift++;
+        }
+
+        histogram = new int[(int) (((long) grid.getMax() - histogramStart) >> binShift) + 1];
+    }
+
+    /**
+     * Add a rectangle of a grid, from its top-left corner to just before its
+     * bottom-right corner, to the statistics.
+     *
+     * @param grid
+     * @param top
+     * @param left
+     * @param bottom
+     * @param right
+     * @param row
+     * @return Statistics
+     */
+    private Statistics add(ElevationGrid grid, int top, int left, int bottom, int right, int[] row) {
+        int width = right - left;
+
+        count += (long) (bottom - top) * width;
+
+        for (int i = top; i < bottom; i++) {
+            // Copy whole rows in one go, and parts of rows value by value.
+            if (width == grid.getCols()) {
+                grid.copyRow(i, row);
+            } else {
+                for (int j = 0; j < width; j++) {
+                    row[j] = grid.get(i, left + j);
+                }
+            }
+
+            int rowMin = Integer.MAX_VALUE;
+            int rowMax = Integer.MIN_VALUE;
+            long rowSum = 0;
+
+            // Keep this loop free of branches so that it can be vectorized.
+            for (int j = 0; j < width; j++) {
+                int value = row[j];
+
+                rowMin = Math.min(rowMin, value);
+                rowMax = Math.max(rowMax, value);
+                rowSum += value;
+            }
+
+            // Count the row into the histogram while it is still in cache.
+            for (int j = 0; j < width; j++) {
+                histogram[(row[j] - histogramStart) >>> binShift]++;
+            }
+
+            // Only remember the row of a new extreme; its column is found at the end.
+            if (rowMin < min || (rowMin == min && i < minRow)) {
+                min = rowMin;
+                minRow = i;
+            }
+
+            if (rowMax > max || (rowMax == max && i < maxRow)) {
+                max = rowMax;
+                maxRow = i;
+            }
+
+            sum += rowSum;
+        }
+
+        return this;
+    }
+
+    /**
+     * Compute the statistics of a given grid.
+     *
+     * Grids kept in memory are summarized in bands of rows. Grids kept on disk
+     * are summarized a tile at a time, one column of tiles after another, so
+     * that every tile is read only once.
+     *
+     * @param grid
+     * @return Statistics
+     */
+    public static Statistics of(ElevationGrid grid) {
+        int rows = grid.getRows();
+        int cols = grid.getCols();
+        Statistics statistics;
+
+        if (grid.isOutOfCore()) {
+            TiledGrid tiled = (TiledGrid) grid;
+            int size = tiled.getTileSize();
+            int tileRows = tiled.getTileRows();
+
+            statistics = Parallel.reduce(tileRows * tiled.getTileCols(), (from, to) -> {
+                Statistics part = new Statistics(grid);
+                int[] row = new int[size];
+
+                for (int i = from; i < to; i++) {
+                    int top = (i % tileRows) * size;
+                    int left = (i / tileRows) * size;
+
+                    part.add(grid, top, left, Math.min(top + size, rows), Math.min(left + size, cols), row);
+                }
+
+                return part;
+            }, Statistics::merge);
+        } else {
+            statistics = Parallel.reduce(rows,
+                    (from, to) -> new Statistics(grid).add(grid, from, 0, to, cols, new int[cols]), Statistics::merge);
+        }
+
+        // Find the columns of the extremes within their rows.
+        int[] row = new int[cols];
+
+        statistics.minIndex = new int[] {
+            statistics.minRow, Matrix.findMinIndexOfArray(grid.copyRow(statistics.minRow, row))
+        };
+
+        statistics.maxIndex = new int[] {
+            statistics.maxRow, Matrix.findMaxIndexOfArray(grid.copyRow(statistics.maxRow, row))
+        };
+
+        return statistics;
+    }
+
+    /**
+     * Merge the statistics of another part of the grid into these ones.
+     *
+     * Equal extremes keep the lower row, so the first occurrence is kept
+     * whatever order the parts are merged in.
+     *
+     * @param other
+     * @return Statistics
+     */
+    private Statistics merge(Statistics other) {
+        if (other.min < min || (other.min == min && other.minRow < minRow)) {
+            min = other.min;
+            minRow = other.minRow;
+        }
+
+        if (other.max > max || (other.max == max && other.maxRow < maxRow)) {
+            max = other.max;
+            maxRow = other.maxRow;
+        }
+
+        sum += other.sum;
+        count += other.count;
+
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] += other.histogram[i];
+        }
+
+        return this;
+    }
+
+    /**
+     * Get the minimum value in the grid.
+     *
+     * @return int
+     */
+    public int getMin() {
+        return min;
+    }
+
+    /**
+     * Get the maximum value in the grid.
+     *
+     * @return int
+     */
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * Get the compound index of the minimum value in the grid.
+     *
+     * @return int[]
+     */
+    public int[] getMinIndex() {
+        return minIndex.clone();
+    }
+
+    /**
+     * Get the compound index of the maximum value in the grid.
+     *
+     * @return int[]
+     */
+    public int[] getMaxIndex() {
+        return maxIndex.clone();
+    }
+
+    /**
+     * Get the mean value of the grid.
+     *
+     * @return double
+     */
+    public double getMean() {
+        return (double) sum / count;
+    }
+
+    /**
+     * Get the lowest value counted by the first histogram bin.
+     *
+     * @return int
+     */
+    public int getHistogramStart() {
+        return histogramStart;
+    }
+
+    /**
+     * Get the number of values counted by each histogram bin.
+     *
+     * @return int
+     */
+    public int getBinWidth() {
+        return 1 << binShift;
+    }
+
+    /**
+     * Get the histogram of values in the grid.
+     *
+     * @return int[]
+     */
+    public int[] getHistogram() {
+        return histogram.clone();
+    }
+
+    /**
+     * Get the number of values in the histogram bin holding a given value.
+     *
+     * @param value
+     * @return int
+     */
+    public int getCount(int value) {
+        long bin = ((long) value - histogramStart) >> binShift;
+
+        return bin >= 0 && bin < histogram.length ? histogram[(int) bin] : 0;
+    }
+}
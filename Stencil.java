@@ -0,0 +1,282 @@
+import java.awt.Color;
+
+/**
+ * Stencil class.
+ *
+ * Layers derived from the 3x3 neighbourhood of every cell of a grid: the
+ * slope, the direction the slope faces (its aspect) and a hillshade lit from
+ * the northwest. The gradient of each cell is found with Horn's method, and
+ * all three layers are computed in a single pass.
+ *
+ * The grid is processed in square blocks spread over the worker threads. Each
+ * block reads its cells and a one-cell border straight from the grid into a
+ * small window that stays in cache while every stencil in the block is
+ * applied, so the grid is never copied. Each layer is kept as one byte per
+ * cell, ready to be drawn, so tiled grids, which may not fit in memory even
+ * at that size, are refused.
+ */
+public class Stencil {
+
+    /**
+     * Define the layers a map can be drawn from, the first being the
+     * elevations of the grid itself.
+     */
+    public static final int ELEVATION = 0;
+
+    public static final int SLOPE = 1;
+
+    public static final int ASPECT = 2;
+
+    public static final int HILLSHADE = 3;
+
+    public static final int LAYERS = 4;
+
+    /**
+     * The names of the layers, as given on the command line.
+     */
+    private static final String[] NAMES = { "elevation", "slope", "aspect", "hillshade" };
+
+    /**
+     * The number of rows and columns of cells in each block.
+     */
+    private static final int BLOCK = 256;
+
+    /**
+     * The direction and height of the light for the hillshade, in degrees.
+     */
+    private static final double AZIMUTH = 315;
+
+    private static final double ALTITUDE = 45;
+
+    /**
+     * The colors of each derived layer, by stored value.
+     */
+    private static final Palette[] PALETTES = {
+        null,
+        new Palette(0, 255, new float[] { 0f, 0.25f, 1f },
+                new Color[] { Colors.gentleSlope, Colors.midSlope, Colors.steepSlope }),
+        new Palette(0, 255, new float[] { 0f, 1 / 255f, 64 / 255f, 128 / 255f, 191 / 255f, 1f },
+                new Color[] { Colors.flatAspect, Colors.northAspect, Colors.eastAspect, Colors.southAspect,
+                    Colors.westAspect, Colors.northAspect }),
+        new Palette(0, 255, new float[] { 0f, 1f }, new Color[] { Colors.shadow, Colors.light }),
+    };
+
+    /**
+     * The distance between neighbouring cells, in the units of the elevations.
+     */
+    private static double cellSize = 1000;
+
+    /**
+     * The number of rows in the matrix.
+     */
+    private int rows;
+
+    /**
+     * The number of columns in the matrix.
+     */
+    private int cols;
+
+    /**
+     * The values of each derived layer, row by row, or null for the elevation
+     * layer. Slopes run from 0 for flat to 255 for vertical, aspects from 1
+     * facing north clockwise to 255 with 0 for flat, and the hillshade from 0
+     * for full shadow to 255 for full light.
+     */
+    private byte[][] layers = new byte[LAYERS][];
+
+    /**
+     * Stencil class constructor. Computes every derived layer.
+     *
+     * The layers take a byte per cell each, so they are not computed for grids
+     * kept on disk.
+     *
+     * @param grid
+     * @return self
+     */
+    public Stencil(ElevationGrid grid) {
+        if (grid.isOutOfCore()) {
+            throw new IllegalArgumentException(
+                    "The slope, aspect and hillshade layers are not available for tiled grids.");
+        }
+
+        this.rows = grid.getRows();
+        this.cols = grid.getCols();
+
+        for (int i = SLOPE; i < LAYERS; i++) {
+            layers[i] = new byte[rows * cols];
+        }
+
+        int blockRows = (rows + BLOCK - 1) / BLOCK;
+        int blockCols = (cols + BLOCK - 1) / BLOCK;
+
+        Parallel.forEach(blockRows * blockCols, (from, to) -> {
+            int[] window = new int[(BLOCK + 2) * (BLOCK + 2)];
+
+            for (int i = from; i < to; i++) {
+                applyBlock(grid, (i / blockCols) * BLOCK, (i % blockCols) * BLOCK, window);
+            }
+        });
+    }
+
+    /**
+     * Set the distance between neighbouring cells, in the units of the
+     * elevations, for the stencils computed from then on.
+     *
+     * @param size
+     * @return void
+     */
+    public static void setCellSize(double size) {
+        if (!(size > 0) || Double.isInfinite(size)) {
+            throw new IllegalArgumentException("The cell size must be a positive number.");
+        }
+
+        cellSize = size;
+    }
+
+    /**
+     * Find the layer with a given name.
+     *
+     * @param name
+     * @return int
+     */
+    public static int parseLayer(String name) {
+        for (int i = 0; i < LAYERS; i++) {
+            if (NAMES[i].equals(name)) {
+                return i;
+            }
+        }
+
+        throw new IllegalArgumentException("The layer must be one of elevation, slope, aspect or hillshade.");
+    }
+
+    /**
+     * Get the stored value of a derived layer at a given cell.
+     *
+     * @param layer
+     * @param row
+     * @param col
+     * @return int
+     */
+    public int get(int layer, int row, int col) {
+        return layers[layer][row * cols + col] & 0xFF;
+    }
+
+    /**
+     * Get the number of bytes taken by the derived layers.
+     *
+     * @return long
+     */
+    public long getMemoryUsage() {
+        return (long) (LAYERS - 1) * rows * cols;
+    }
+
+    /**
+     * Get the packed ARGB color of a derived layer at a given cell.
+     *
+     * @param layer
+     * @param row
+     * @param col
+     * @return int
+     */
+    public int getColor(int layer, int row, int col) {
+        return PALETTES[layer].getColor(layers[layer][row * cols + col] & 0xFF);
+    }
+
+    /**
+     * Get the slope at a given cell, in degrees.
+     *
+     * @param row
+     * @param col
+     * @return double
+     */
+    public double getSlope(int row, int col) {
+        return get(SLOPE, row, col) * 90.0 / 255;
+    }
+
+    /**
+     * Get the compass direction the slope at a given cell faces, in degrees
+     * clockwise from north, or -1 if the cell is flat.
+     *
+     * @param row
+     * @param col
+     * @return double
+     */
+    public double getAspect(int row, int col) {
+        int value = get(ASPECT, row, col);
+
+        return value == 0 ? -1 : (value - 0.5) * 360.0 / 255;
+    }
+
+    /**
+     * Apply the stencils to the block of cells with a given top left corner.
+     *
+     * @param grid
+     * @param top
+     * @param left
+     * @param window
+     * @return void
+     */
+    private void applyBlock(ElevationGrid grid, int top, int left, int[] window) {
+        int height = Math.min(BLOCK, rows - top);
+        int width = Math.min(BLOCK, cols - left);
+        int span = width + 2;
+
+        // Read the block and its border, repeating the cells at the edges.
+        for (int i = 0; i < height + 2; i++) {
+            int row = Math.min(Math.max(top + i - 1, 0), rows - 1);
+
+            for (int j = 0; j < span; j++) {
+                window[i * span + j] = grid.get(row, Math.min(Math.max(left + j - 1, 0), cols - 1));
+            }
+        }
+
+        double scale = 1 / (8 * cellSize);
+        double zenith = Math.toRadians(90 - ALTITUDE);
+        double azimuth = Math.toRadians(360 - AZIMUTH + 90);
+        double lightX = Math.cos(azimuth) * Math.sin(zenith);
+        double lightY = Math.sin(azimuth) * Math.sin(zenith);
+        double lightZ = Math.cos(zenith);
+        byte[] slopes = layers[SLOPE];
+        byte[] aspects = layers[ASPECT];
+        byte[] shades = layers[HILLSHADE];
+
+        for (int i = 0; i < height; i++) {
+            int above = i * span;
+            int middle = above + span;
+            int below = middle + span;
+            int offset = (top + i) * cols + left;
+
+            for (int j = 0; j < width; j++) {
+                int a = window[above + j];
+                int b = window[above + j + 1];
+                int c = window[above + j + 2];
+                int d = window[middle + j];
+                int f = window[middle + j + 2];
+                int g = window[below + j];
+                int h = window[below + j + 1];
+                int k = window[below + j + 2];
+
+                // Find the rate of rise to the east and to the south.
+                double dx = ((c + 2 * f + k) - (a + 2 * d + g)) * scale;
+                double dy = ((g + 2 * h + k) - (a + 2 * b + c)) * scale;
+                double rise = Math.sqrt(dx * dx + dy * dy);
+
+                slopes[offset + j] = (byte) Math.round(Math.atan(rise) * (255 / (Math.PI / 2)));
+
+                // The slope faces away from the direction it rises in.
+                if (rise == 0) {
+                    aspects[offset + j] = 0;
+                } else {
+                    double compass = (Math.toDegrees(Math.atan2(-dx, dy)) + 360) % 360;
+
+                    aspects[offset + j] = (byte) (1 + Math.min(254, (int) (compass * 255 / 360)));
+                }
+
+                // Light the surface by how directly its normal faces the sun.
+                double shade = (lightZ - dx * lightX + dy * lightY) / Math.sqrt(1 + rise * rise);
+
+                shades[offset + j] = (byte) Math.round(Math.max(shade, 0) * 255);
+            }
+        }
+    }
+}
@@ -0,0 +1,512 @@
+import java.util.Map;
+import java.util.Arrays;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * TiledGrid class.
+ *
+ * A grid kept on disk in square tiles, for datasets larger than memory. Tiles
+ * are read on demand into a cache of recently used tiles, which is held under
+ * a fixed memory budget by evicting the least recently used tile first. The
+ * tiled grid format is a fixed header followed by the tiles, each in
+ * row-major order and padded to full size at the edges of the grid, all in
+ * little-endian byte order:
+ *
+ *   int magic, int rows, int cols, int min, int max, int sampleSize,
+ *   int tileSize, int reserved
+ *   tile[tileRows * tileCols], row after row of tiles
+ */
+public class TiledGrid extends ElevationGrid {
+
+    /**
+     * The magic number identifying a tiled grid file ("ELTL").
+     */
+    public static final int MAGIC = 0x4C544C45;
+
+    /**
+     * The size of the file header in bytes.
+     */
+    public static final int HEADER_SIZE = 32;
+
+    /**
+     * The number of rows and columns in each tile, unless given otherwise.
+     */
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    /**
+     * The most memory the tiles of each grid may take, in bytes.
+     */
+    private static long budget = 256L << 20;
+
+    /**
+     * The open file.
+     */
+    private FileChannel channel;
+
+    /**
+     * The size of each sample in bytes.
+     */
+    private int sampleSize;
+
+    /**
+     * The number of rows and columns in each tile, and its base-2 logarithm.
+     */
+    private int tileSize;
+
+    private int tileShift;
+
+    /**
+     * The number of rows and columns of tiles.
+     */
+    private int tileRows;
+
+    private int tileCols;
+
+    /**
+     * The recently used tiles by index, least recently used first. The last
+     * entry of each tile holds its own index.
+     */
+    private LinkedHashMap<Integer, int[]> tiles;
+
+    /**
+     * The tile each thread used last, checked before the shared cache. A
+     * thread may hold on to its last tile after it is evicted, so the budget
+     * can be exceeded by up to one tile per thread.
+     */
+    private ThreadLocal<int[]> recent = new ThreadLocal<>();
+
+    /**
+     * The number of tiles read from disk.
+     */
+    private long reads = 0;
+
+    /**
+     * TiledGrid class constructor.
+     *
+     * Reads only the header; tiles are read as they are accessed.
+     *
+     * @param fileName
+     * @return self
+     * @throws IOException
+     */
+    public TiledGrid(String fileName) throws IOException {
+        channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        readFully(header, 0);
+        header.flip();
+
+        if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+            channel.close();
+            throw new IOException("Missing tiled grid header.");
+        }
+
+        rows = header.getInt();
+        cols = header.getInt();
+        min = header.getInt();
+        max = header.getInt();
+        sampleSize = header.getInt();
+        tileSize = header.getInt();
+
+        if (rows <= 0 || cols <= 0 || (sampleSize != 2 && sampleSize != 4) || tileSize <= 0
+                || Integer.bitCount(tileSize) != 1) {
+            channel.close();
+            throw new IOException("Invalid tiled grid header.");
+        }
+
+        tileShift = Integer.numberOfTrailingZeros(tileSize);
+        tileRows = (rows + tileSize - 1) / tileSize;
+        tileCols = (cols + tileSize - 1) / tileSize;
+
+        if (HEADER_SIZE + (long) tileRows * tileCols * tileSize * tileSize * sampleSize > channel.size()) {
+            channel.close();
+            throw new IOException("Tiled grid is truncated.");
+        }
+
+        // Keep as many tiles as fit in the budget, and always at least one.
+        long capacity = Math.max(budget / ((long) tileSize * tileSize * Integer.BYTES), 1);
+
+        tiles = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, int[]> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Set the most memory the tiles of each grid opened from now on may take.
+     *
+     * @param bytes
+     * @return void
+     */
+    public static void setBudget(long bytes) {
+        if (bytes < 1) {
+            throw new IllegalArgumentException("The memory budget must be positive.");
+        }
+
+        budget = bytes;
+    }
+
+    /**
+     * Get the most memory the tiles of each grid may take.
+     *
+     * @return long
+     */
+    public static long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Check whether the grid is kept on disk rather than in memory.
+     *
+     * @return boolean
+     */
+    @Override
+    public boolean isOutOfCore() {
+        return true;
+    }
+
+    /**
+     * Get the number of bytes taken by the tiles cached so far, not counting
+     * the last tile each thread holds on to.
+     *
+     * @return long
+     */
+    @Override
+    public synchronized long getMemoryUsage() {
+        return (long) tiles.size() * (tileSize * tileSize + 1) * Integer.BYTES;
+    }
+
+    /**
+     * Get the number of rows and columns in each tile.
+     *
+     * @return int
+     */
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Get the number of rows of tiles.
+     *
+     * @return int
+     */
+    public int getTileRows() {
+        return tileRows;
+    }
+
+    /**
+     * Get the number of columns of tiles.
+     *
+     * @return int
+     */
+    public int getTileCols() {
+        return tileCols;
+    }
+
+    /**
+     * Get the number of tiles read from disk so far.
+     *
+     * @return long
+     */
+    public synchronized long getReads() {
+        return reads;
+    }
+
+    /**
+     * Get the value at a given position in the grid.
+     *
+     * @param row
+     * @param col
+     * @return int
+     */
+    @Override
+    public int get(int row, int col) {
+        int index = (row >> tileShift) * tileCols + (col >> tileShift);
+        int[] tile = recent.get();
+
+        if (tile == null || tile[tile.length - 1] != index) {
+            tile = getTile(index);
+            recent.set(tile);
+        }
+
+        return tile[((row & (tileSize - 1)) << tileShift) | (col & (tileSize - 1))];
+    }
+
+    /**
+     * Copy a given row of the grid into a buffer of at least getCols() values.
+     *
+     * @param row
+     * @param buffer
+     * @return int[]
+     */
+    @Override
+    public int[] copyRow(int row, int[] buffer) {
+        int offset = (row & (tileSize - 1)) << tileShift;
+
+        for (int i = 0; i < tileCols; i++) {
+            int[] tile = getTile((row >> tileShift) * tileCols + i);
+            int from = i << tileShift;
+
+            System.arraycopy(tile, offset, buffer, from, Math.min(tileSize, cols - from));
+        }
+
+        return buffer;
+    }
+
+    /**
+     * Get the values of a tile, reading it from disk if it is not cached.
+     *
+     * @param index
+     * @return int[]
+     */
+    private int[] getTile(int index) {
+        synchronized (this) {
+            int[] tile = tiles.get(index);
+
+            if (tile != null) {
+                return tile;
+            }
+        }
+
+        // Read outside the lock, so threads after different tiles do not wait on
+        // each other. Two threads may read the same tile; either copy will do.
+        int[] tile = readTile(index);
+
+        synchronized (this) {
+            reads++;
+            tiles.putIfAbsent(index, tile);
+
+            return tile;
+        }
+    }
+
+    /**
+     * Read a tile from disk.
+     *
+     * @param index
+     * @return int[]
+     */
+    private int[] readTile(int index) {
+        int area = tileSize * tileSize;
+        int[] tile = new int[area + 1];
+        ByteBuffer bytes = ByteBuffer.allocate(area * sampleSize).order(ByteOrder.LITTLE_ENDIAN);
+
+        try {
+            readFully(bytes, HEADER_SIZE + (long) index * area * sampleSize);
+        } catch (IOException e) {
+            throw new IllegalStateException(String.format("There was a problem reading tile %d.", index), e);
+        }
+
+        bytes.flip();
+
+        for (int i = 0; i < area; i++) {
+            tile[i] = sampleSize == 2 ? bytes.getShort() : bytes.getInt();
+        }
+
+        tile[area] = index;
+
+        return tile;
+    }
+
+    /**
+     * Fill a buffer from the file, starting at a given position.
+     *
+     * @param buffer
+     * @param position
+     * @return void
+     * @throws IOException
+     */
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+
+            if (read < 0) {
+                break;
+            }
+
+            position += read;
+        }
+    }
+
+    /**
+     * Check whether a given file starts with the tiled grid header.
+     *
+     * @param fileName
+     * @return boolean
+     */
+    public static boolean isTiled(String fileName) {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+
+            while (magic.hasRemaining() && channel.read(magic) >= 0);
+
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Convert a text matrix file or a binary grid into the tiled grid format.
+     *
+     * Only one row of tiles is held in memory at a time. A text matrix is read
+     * twice, first to find its range and then to write it.
+     *
+     * @param source
+     * @param target
+     * @param tileSize
+     * @return void
+     * @throws IOException
+     */
+    public static void convert(String source, String target, int tileSize) throws IOException {
+        if (tileSize <= 0 || Integer.bitCount(tileSize) != 1) {
+            throw new IllegalArgumentException("The tile size must be a power of two.");
+        }
+
+        if (BinaryGrid.isBinary(source) || isTiled(source)) {
+            ElevationGrid grid = Matrix.load(source);
+            int[] row = new int[grid.getCols()];
+
+            write(target, grid.getRows(), grid.getCols(), grid.getMin(), grid.getMax(), tileSize,
+                    (i, buffer) -> System.arraycopy(grid.copyRow(i, row), 0, buffer, 0, row.length));
+            return;
+        }
+
+        int[] dimensions = Matrix.parseDimensions(source);
+        int rows = dimensions[0];
+        int cols = dimensions[1];
+        long length = (long) rows * cols;
+
+        // Find the range, counting any values missing from the end, or after
+        // a malformed value, as zero.
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        long filled = 0;
+
+        try (DataReader file = new DataReader(source)) {
+            for (; filled < length && file.hasNextInt(); filled++) {
+                int value = file.nextInt();
+
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+        }
+
+        if (filled < length) {
+            min = Math.min(min, 0);
+            max = Math.max(max, 0);
+        }
+
+        try (DataReader file = new DataReader(source)) {
+            write(target, rows, cols, min, max, tileSize, (i, buffer) -> {
+                for (int j = 0; j < cols; j++) {
+                    buffer[j] = file.hasNextInt() ? file.nextInt() : 0;
+                }
+            });
+        }
+    }
+
+    /**
+     * Write a grid to a file in the tiled grid format, given its rows in order.
+     *
+     * @param fileName
+     * @param rows
+     * @param cols
+     * @param min
+     * @param max
+     * @param tileSize
+     * @param source
+     * @return void
+     * @throws IOException
+     */
+    private static void write(String fileName, int rows, int cols, int min, int max, int tileSize,
+            RowSource source) throws IOException {
+        int sampleSize = min >= Short.MIN_VALUE && max <= Short.MAX_VALUE ? 2 : 4;
+        int tileCols = (cols + tileSize - 1) / tileSize;
+
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+            header.putInt(MAGIC).putInt(rows).putInt(cols).putInt(min).putInt(max).putInt(sampleSize)
+                    .putInt(tileSize).putInt(0).flip();
+            writeFully(channel, header);
+
+            // Gather a row of tiles at a time, then write its tiles in order.
+            int[][] strip = new int[tileSize][tileCols * tileSize];
+            ByteBuffer tile = ByteBuffer.allocate(tileSize * tileSize * sampleSize).order(ByteOrder.LITTLE_ENDIAN);
+
+            for (int top = 0; top < rows; top += tileSize) {
+                for (int i = 0; i < tileSize; i++) {
+                    if (top + i < rows) {
+                        source.read(top + i, strip[i]);
+                    } else {
+                        Arrays.fill(strip[i], 0);
+                    }
+                }
+
+                for (int t = 0; t < tileCols; t++) {
+                    tile.clear();
+
+                    for (int i = 0; i < tileSize; i++) {
+                        for (int j = t * tileSize; j < (t + 1) * tileSize; j++) {
+                            int value = j < cols ? strip[i][j] : 0;
+
+                            if (sampleSize == 2) {
+                                tile.putShort((short) value);
+                            } else {
+                                tile.putInt(value);
+                            }
+                        }
+                    }
+
+                    tile.flip();
+                    writeFully(channel, tile);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the entire contents of a buffer to a channel.
+     *
+     * @param channel
+     * @param buffer
+     * @return void
+     * @throws IOException
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * RowSource interface.
+     *
+     * Supplies the rows of a grid being written, in order.
+     */
+    private interface RowSource {
+
+        /**
+         * Read a given row into a buffer.
+         *
+         * @param row
+         * @param buffer
+         * @return void
+         * @throws IOException
+         */
+        void read(int row, int[] buffer) throws IOException;
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Trail class.
+ *
+ * A route between two arbitrary cells of a grid, found by the router: the
+ * cells along it from start to finish, each as row * cols + col, and its
+ * total elevation change.
+ */
+public class Trail {
+
+    /**
+     * The cells along the trail, in order.
+     */
+    private int[] cells;
+
+    /**
+     * The total elevation change along the trail.
+     */
+    private int cost;
+
+    /**
+     * The number of cells the search expanded to find the trail.
+     */
+    private int expanded;
+
+    /**
+     * Trail class constructor.
+     *
+     * @param cells
+     * @param cost
+     * @param expanded
+     * @return self
+     */
+    public Trail(int[] cells, int cost, int expanded) {
+        this.cells = cells;
+        this.cost = cost;
+        this.expanded = expanded;
+    }
+
+    /**
+     * Get the cells along the trail, in order.
+     *
+     * @return int[]
+     */
+    public int[] getCells() {
+        return cells;
+    }
+
+    /**
+     * Get the total elevation change along the trail.
+     *
+     * @return int
+     */
+    public int getCost() {
+        return cost;
+    }
+
+    /**
+     * Get the number of cells the search expanded to find the trail.
+     *
+     * @return int
+     */
+    public int getExpanded() {
+        return expanded;
+    }
+}
@@ -0,0 +1,231 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * VectorWalker class.
+ *
+ * Walks every greedy path at once, one column at a time. The current row and
+ * running total of each path are kept in flat arrays, and the elevation
+ * changes and choice of step are worked out for a whole vector of paths per
+ * instruction using the incubating Vector API. Only paths that meet a random
+ * tie drop to scalar code, using the same per-path random streams as the
+ * plain walker, so the results are identical.
+ *
+ * Needs the jdk.incubator.vector module (see Walker.create()).
+ */
+public class VectorWalker extends Walker {
+
+    /**
+     * The preferred vector shape of the platform.
+     */
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    /**
+     * The elevation grid.
+     */
+    private ElevationGrid grid;
+
+    /**
+     * The number of rows in the grid.
+     */
+    private int rows;
+
+    /**
+     * The number of columns in the grid.
+     */
+    private int cols;
+
+    /**
+     * VectorWalker class constructor.
+     *
+     * @param grid
+     * @param disableMiddlePriority
+     * @param seed
+     * @return self
+     */
+    public VectorWalker(ElevationGrid grid, boolean disableMiddlePriority, long seed) {
+        super(grid, disableMiddlePriority, seed);
+
+        this.grid = grid;
+        this.rows = grid.getRows();
+        this.cols = grid.getCols();
+    }
+
+    /**
+     * Walk a path from every row of the first column, with each thread taking
+     * a band of starting rows.
+     *
+     * @param moves
+     * @return int[]
+     */
+    @Override
+    public int[] walkAll(byte[] moves) {
+        int[] totals = new int[rows];
+
+        Parallel.forEach(rows, (from, to) -> walkBand(from, to, totals, moves));
+
+        return totals;
+    }
+
+    /**
+     * Walk the paths starting from a band of rows, column by column.
+     *
+     * @param from
+     * @param to
+     * @param totals
+     * @param moves
+     * @return void
+     */
+    private void walkBand(int from, int to, int[] totals, byte[] moves) {
+        int count = to - from;
+        int steps = cols - 1;
+        int lanes = SPECIES.length();
+        int bound = SPECIES.loopBound(count);
+        boolean disableMiddlePriority = isMiddlePriorityDisabled();
+
+        // The state of each path.
+        int[] positions = new int[count];
+        int[] changes = new int[count];
+        long[] random = new long[count];
+
+        for (int k = 0; k < count; k++) {
+            positions[k] = from + k;
+            random[k] = seed(from + k);
+        }
+
+        // The elevations of the current and next columns, filled in only over
+        // the rows the band's paths can reach.
+        int[] current = new int[rows];
+        int[] next = new int[rows];
+
+        // Scratch space for the lanes of a single vector.
+        int[] ups = new int[lanes];
+        int[] downs = new int[lanes];
+        int[] lane = new int[lanes];
+        int[] kinds = new int[lanes];
+
+        int low = from;
+        int high = to - 1;
+
+        fillColumn(current, 0, low, high);
+
+        for (int i = 0; i < steps; i++) {
+            fillColumn(next, i + 1, Math.max(low - 1, 0), Math.min(high + 1, rows - 1));
+
+            int k = 0;
+
+            for (; k < bound; k += lanes) {
+                IntVector position = IntVector.fromArray(SPECIES, positions, k);
+
+                // Clamping at the edges makes the missing neighbour look the
+                // same as moving forward, as in Walker.step().
+                position.sub(1).max(0).intoArray(ups, 0);
+                position.add(1).min(rows - 1).intoArray(downs, 0);
+
+                IntVector here = IntVector.fromArray(SPECIES, current, 0, positions, k);
+                IntVector fwdChange = here.sub(IntVector.fromArray(SPECIES, next, 0, positions, k)).abs();
+                IntVector upChange = here.sub(IntVector.fromArray(SPECIES, next, 0, ups, 0)).abs();
+                IntVector downChange = here.sub(IntVector.fromArray(SPECIES, next, 0, downs, 0)).abs();
+
+                IntVector min = upChange.min(fwdChange).min(downChange);
+
+                VectorMask<Integer> fwdMin = fwdChange.eq(min);
+                VectorMask<Integer> upMin = upChange.eq(min);
+                VectorMask<Integer> downMin = downChange.eq(min);
+
+                // Choose the step as in Walker.choose(), without the ties.
+                IntVector move = IntVector.broadcast(SPECIES, 1).blend(-1, upMin).blend(0, fwdMin);
+
+                IntVector.fromArray(SPECIES, changes, k).add(min).intoArray(changes, k);
+
+                // Find the kind of tie of each path, if any.
+                VectorMask<Integer> fwdOrUp = fwdMin.and(upMin);
+                VectorMask<Integer> fwdOrDown = fwdMin.and(downMin);
+                VectorMask<Integer> tie = upMin.and(downMin).and(fwdMin.not());
+
+                if (disableMiddlePriority) {
+                    tie = tie.or(fwdOrUp).or(fwdOrDown);
+                }
+
+                move.intoArray(lane, 0);
+
+                // Break the ties one path at a time.
+                if (tie.anyTrue()) {
+                    IntVector kind = IntVector.broadcast(SPECIES, UP_OR_DOWN);
+
+                    if (disableMiddlePriority) {
+                        kind = kind.blend(FWD_OR_DOWN, fwdOrDown).blend(FWD_OR_UP, fwdOrUp);
+                    }
+
+                    kind.intoArray(kinds, 0);
+
+                    for (int l = 0; l < lanes; l++) {
+                        if (tie.laneIsSet(l)) {
+                            random[k + l] += GOLDEN_GAMMA;
+                            lane[l] = breakTie(kinds[l], positions[k + l], mix(random[k + l]));
+                        }
+                    }
+
+                    move = IntVector.fromArray(SPECIES, lane, 0);
+                }
+
+                position.add(move).intoArray(positions, k);
+
+                if (moves != null) {
+                    for (int l = 0; l < lanes; l++) {
+                        moves[(from + k + l) * steps + i] = (byte) lane[l];
+                    }
+                }
+            }
+
+            // Step the paths left over after the last full vector.
+            for (; k < count; k++) {
+                long step = step(positions[k], i);
+                int move = getMove(step);
+
+                if (getTie(step) != NO_TIE) {
+                    random[k] += GOLDEN_GAMMA;
+                    move = breakTie(getTie(step), positions[k], mix(random[k]));
+                }
+
+                if (moves != null) {
+                    moves[(from + k) * steps + i] = (byte) move;
+                }
+
+                positions[k] += move;
+                changes[k] += getChange(step);
+            }
+
+            // Narrow the rows to fill in for the next column.
+            low = rows;
+            high = 0;
+
+            for (int position : positions) {
+                low = Math.min(low, position);
+                high = Math.max(high, position);
+            }
+
+            int[] swap = current;
+            current = next;
+            next = swap;
+        }
+
+        System.arraycopy(changes, 0, totals, from, count);
+    }
+
+    /**
+     * Copy the elevations of a range of rows in a given column into a buffer.
+     *
+     * @param buffer
+     * @param col
+     * @param low
+     * @param high
+     * @return void
+     */
+    private void fillColumn(int[] buffer, int col, int low, int high) {
+        for (int i = low; i <= high; i++) {
+            buffer[i] = grid.get(i, col);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/**
+ * Viewport class.
+ *
+ * The part of a grid shown in a window: the zoom scale, in screen pixels per
+ * cell, and the grid position at the top left corner of the window. The map
+ * is kept on screen, and centered along any side where it is smaller than the
+ * window.
+ */
+public class Viewport {
+
+    /**
+     * The largest zoom scale, in screen pixels per cell.
+     */
+    private static final double MAX_SCALE = 32;
+
+    /**
+     * The number of rows in the grid.
+     */
+    private int rows;
+
+    /**
+     * The number of columns in the grid.
+     */
+    private int cols;
+
+    /**
+     * The size of the window, in screen pixels.
+     */
+    private int width;
+
+    private int height;
+
+    /**
+     * The number of screen pixels per cell.
+     */
+    private double scale = 1;
+
+    /**
+     * The grid position at the top left corner of the window, in cells.
+     */
+    private double left;
+
+    private double top;
+
+    /**
+     * Viewport class constructor.
+     *
+     * @param rows
+     * @param cols
+     * @return self
+     */
+    public Viewport(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    /**
+     * Set the size of the window, keeping the same grid position at its top
+     * left corner.
+     *
+     * @param width
+     * @param height
+     * @return void
+     */
+    public void setSize(int width, int height) {
+        this.width = width;
+        this.height = height;
+
+        zoom(1, 0, 0);
+    }
+
+    /**
+     * Show the whole map, at no more than one pixel per cell.
+     *
+     * @return void
+     */
+    public void fit() {
+        scale = getMinScale();
+
+        zoom(1, 0, 0);
+    }
+
+    /**
+     * Zoom by a given factor, keeping the grid position under a given point of
+     * the window in place.
+     *
+     * @param factor
+     * @param x
+     * @param y
+     * @return void
+     */
+    public void zoom(double factor, int x, int y) {
+        double col = getCol(x);
+        double row = getRow(y);
+
+        scale = Math.min(Math.max(scale * factor, getMinScale()), MAX_SCALE);
+        left = clamp(col - x / scale, cols, width);
+        top = clamp(row - y / scale, rows, height);
+    }
+
+    /**
+     * Move the map by a given number of screen pixels.
+     *
+     * @param dx
+     * @param dy
+     * @return void
+     */
+    public void pan(int dx, int dy) {
+        left = clamp(left - dx / scale, cols, width);
+        top = clamp(top - dy / scale, rows, height);
+    }
+
+    /**
+     * Get the grid column under a given point of the window.
+     *
+     * @param x
+     * @return double
+     */
+    public double getCol(int x) {
+        return left + x / scale;
+    }
+
+    /**
+     * Get the grid row under a given point of the window.
+     *
+     * @param y
+     * @return double
+     */
+    public double getRow(int y) {
+        return top + y / scale;
+    }
+
+    /**
+     * Get the point of the window at a given grid column.
+     *
+     * @param col
+     * @return double
+     */
+    public double getX(double col) {
+        return (col - left) * scale;
+    }
+
+    /**
+     * Get the point of the window at a given grid row.
+     *
+     * @param row
+     * @return double
+     */
+    public double getY(double row) {
+        return (row - top) * scale;
+    }
+
+    /**
+     * Get the coarsest pyramid level that still has at least one cell for each
+     * screen pixel.
+     *
+     * @param levels
+     * @return int
+     */
+    public int getLevel(int levels) {
+        int level = 0;
+
+        while (level < levels - 1 && scale * (2L << level) <= 1) {
+            level++;
+        }
+
+        return level;
+    }
+
+    /**
+     * Get the number of screen pixels per cell.
+     *
+     * @return double
+     */
+    public double getScale() {
+        return scale;
+    }
+
+    /**
+     * Get the width of the window.
+     *
+     * @return int
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Get the height of the window.
+     *
+     * @return int
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Get the smallest zoom scale, at which the whole map fits in the window.
+     *
+     * @return double
+     */
+    private double getMinScale() {
+        if (width <= 0 || height <= 0) {
+            return 1;
+        }
+
+        return Math.min(1, Math.min((double) width / cols, (double) height / rows));
+    }
+
+    /**
+     * Keep a side of the map on screen, centering it if it is smaller than the
+     * window.
+     *
+     * @param start
+     * @param cells
+     * @param pixels
+     * @return double
+     */
+    private double clamp(double start, int cells, int pixels) {
+        double visible = pixels / scale;
+
+        if (visible >= cells) {
+            return (cells - visible) / 2;
+        }
+
+        return Math.min(Math.max(start, 0), cells - visible);
+    }
+}
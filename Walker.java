@@ -0,0 +1,359 @@
+/**
+ * Walker class.
+ *
+ * Walks greedy paths of "least resistance" from west to east across a grid,
+ * one column at a time. Every path draws its random tie-breaks from its own
+ * stream, seeded from the starting row, so paths can be walked in any order
+ * or in parallel and still give the same results.
+ *
+ * Each step is evaluated with primitive locals only and packed into a single
+ * long (see step()), and a path's random stream is a plain long state that is
+ * only advanced when there is a tie, so walking allocates nothing.
+ */
+public class Walker {
+
+    /**
+     * The golden ratio increment used to spread seeds apart.
+     */
+    protected static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Define the kinds of ties that are broken randomly.
+     */
+    public static final int NO_TIE = 0;
+
+    public static final int FWD_OR_UP = 1;
+
+    public static final int FWD_OR_DOWN = 2;
+
+    public static final int UP_OR_DOWN = 3;
+
+    /**
+     * Whether the incubating Vector API is available to this run.
+     */
+    private static final boolean VECTORS = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    /**
+     * The elevation grid.
+     */
+    private ElevationGrid grid;
+
+    /**
+     * The number of rows in the grid.
+     */
+    private int rows;
+
+    /**
+     * The number of columns in the grid.
+     */
+    private int cols;
+
+    /**
+     * Whether the "--disable-middle-priority" command-line switch is set.
+     */
+    private boolean disableMiddlePriority;
+
+    /**
+     * The seed from which every path's random stream is derived.
+     */
+    private long seed;
+
+    /**
+     * Walker class constructor.
+     *
+     * @param grid
+     * @param disableMiddlePriority
+     * @param seed
+     * @return self
+     */
+    public Walker(ElevationGrid grid, boolean disableMiddlePriority, long seed) {
+        this.grid = grid;
+        this.rows = grid.getRows();
+        this.cols = grid.getCols();
+        this.disableMiddlePriority = disableMiddlePriority;
+        this.seed = seed;
+    }
+
+    /**
+     * Create the fastest walker available for a given grid and mode.
+     *
+     * The vector walker is only ever loaded when its module is present, so the
+     * plain walkers still work on a runtime started without it.
+     *
+     * @param grid
+     * @param disableMiddlePriority
+     * @param seed
+     * @return Walker
+     */
+    public static Walker create(ElevationGrid grid, boolean disableMiddlePriority, long seed) {
+        // Stream grids kept on disk one band of columns at a time.
+        if (grid.isOutOfCore()) {
+            return new BandWalker(grid, disableMiddlePriority, seed);
+        }
+
+        if (VECTORS) {
+            return new VectorWalker(grid, disableMiddlePriority, seed);
+        }
+
+        return new Walker(grid, disableMiddlePriority, seed);
+    }
+
+    /**
+     * Walk a path from every row of the first column, in parallel.
+     *
+     * @return int[]
+     */
+    public int[] walkAll() {
+        return walkAll(null);
+    }
+
+    /**
+     * Walk a path from every row of the first column, in parallel.
+     *
+     * If moves is given, the row movements of each path are recorded in it,
+     * one path after another.
+     *
+     * @param moves
+     * @return int[]
+     */
+    public int[] walkAll(byte[] moves) {
+        int[] totals = new int[rows];
+        int steps = cols - 1;
+
+        Parallel.forEach(rows, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                totals[i] = walk(i, moves, i * steps);
+            }
+        });
+
+        return totals;
+    }
+
+    /**
+     * Walk a path starting from a given row of the first column.
+     *
+     * If moves is given, the row movement of each step is recorded in it from
+     * the given offset.
+     *
+     * @param row
+     * @param moves
+     * @param offset
+     * @return int
+     */
+    public int walk(int row, byte[] moves, int offset) {
+        long random = seed(row);
+        int change = 0;
+
+        for (int i = 0; i < cols - 1; i++) {
+            // Find the direction and elevation change of the next position.
+            long step = step(row, i);
+            int move = getMove(step);
+
+            // Break any tie with the next value from the path's random stream.
+            if (getTie(step) != NO_TIE) {
+                random += GOLDEN_GAMMA;
+                move = breakTie(getTie(step), row, mix(random));
+            }
+
+            if (moves != null) {
+                moves[offset + i] = (byte) move;
+            }
+
+            // Shift the position to the appropriate row.
+            row += move;
+
+            // Keep a running total of the change in elevation.
+            change += getChange(step);
+        }
+
+        return change;
+    }
+
+    /**
+     * Get the grid being walked.
+     *
+     * @return ElevationGrid
+     */
+    public ElevationGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Check whether the "middle-priority" rule is disabled.
+     *
+     * @return boolean
+     */
+    public boolean isMiddlePriorityDisabled() {
+        return disableMiddlePriority;
+    }
+
+    /**
+     * Get the initial state of the random stream for the path starting from a
+     * given row.
+     *
+     * @param row
+     * @return long
+     */
+    public long seed(int row) {
+        return mix(seed + (row + 1) * GOLDEN_GAMMA);
+    }
+
+    /**
+     * Evaluate the next "best" step in a path from a given position.
+     *
+     * The result packs the elevation change of the step, the kind of tie to be
+     * broken randomly (if any) and the row movement to make when there is no
+     * tie into a single long. Every choice in a tie has the same elevation
+     * change, so the change is known even before the tie is broken.
+     *
+     * @param row
+     * @param col
+     * @return long
+     */
+    public long step(int row, int col) {
+        // Store the current elevation for later comparison.
+        int current = grid.get(row, col);
+
+        // Advance the search to the next column.
+        col++;
+
+        // Calculate the elevations of possible next steps, being careful
+        // to avoid overflowing the grid at the top and bottom edges.
+        int fwdChange = Math.abs(current - grid.get(row, col));
+        int upChange = row > 0 ? Math.abs(current - grid.get(row - 1, col)) : fwdChange;
+        int downChange = row < rows - 1 ? Math.abs(current - grid.get(row + 1, col)) : fwdChange;
+
+        return choose(upChange, fwdChange, downChange);
+    }
+
+    /**
+     * Choose between the possible next steps, given their elevation changes.
+     *
+     * @param upChange
+     * @param fwdChange
+     * @param downChange
+     * @return long
+     */
+    public long choose(int upChange, int fwdChange, int downChange) {
+        // Find the minimum value among the three possible directions.
+        int min = Math.min(upChange, Math.min(fwdChange, downChange));
+
+        // Define relative row movements.
+        int up = -1;
+        int fwd = 0;
+        int down = 1;
+
+        // The disableMiddlePriority switch disables the "middle-priority" rule
+        // (described in the project specifications) in order to achieve more
+        // divergent pathing. Pass "--disable-middle-priority" as the second
+        // command-line argument to flip the switch and activate the chaos!
+
+        if (disableMiddlePriority && min == fwdChange && min == upChange) {
+            // Randomly select between forward and up.
+            return pack(min, FWD_OR_UP, fwd);
+        }
+
+        if (disableMiddlePriority && min == fwdChange && min == downChange) {
+            // Randomly select between forward and down.
+            return pack(min, FWD_OR_DOWN, fwd);
+        }
+
+        if (min == fwdChange) {
+            // Move forward.
+            return pack(min, NO_TIE, fwd);
+        }
+
+        if (min == upChange && min == downChange) {
+            // Randomly select between up and down.
+            return pack(min, UP_OR_DOWN, up);
+        }
+
+        if (min == upChange) {
+            // Move up.
+            return pack(min, NO_TIE, up);
+        }
+
+        // Move down.
+        return pack(min, NO_TIE, down);
+    }
+
+    /**
+     * Break a tie between two possible steps with a random value.
+     *
+     * A step can never leave the grid, so a tie at the top or bottom edge
+     * always falls back to moving forward.
+     *
+     * @param tie
+     * @param row
+     * @param random
+     * @return int
+     */
+    public int breakTie(int tie, int row, long random) {
+        boolean heads = random >= 0;
+
+        if (tie == FWD_OR_UP) {
+            return heads || row == 0 ? 0 : -1;
+        }
+
+        if (tie == FWD_OR_DOWN) {
+            return heads || row == rows - 1 ? 0 : 1;
+        }
+
+        return heads ? -1 : 1;
+    }
+
+    /**
+     * Get the elevation change of a packed step.
+     *
+     * @param step
+     * @return int
+     */
+    public static int getChange(long step) {
+        return (int) (step >>> 4);
+    }
+
+    /**
+     * Get the kind of tie of a packed step.
+     *
+     * @param step
+     * @return int
+     */
+    public static int getTie(long step) {
+        return (int) (step >>> 2) & 3;
+    }
+
+    /**
+     * Get the row movement of a packed step without a tie.
+     *
+     * @param step
+     * @return int
+     */
+    public static int getMove(long step) {
+        return (int) (step & 3) - 1;
+    }
+
+    /**
+     * Pack the elevation change, tie and row movement of a step into a long.
+     *
+     * @param change
+     * @param tie
+     * @param move
+     * @return long
+     */
+    private static long pack(int change, int tie, int move) {
+        return ((long) change << 4) | (tie << 2) | (move + 1);
+    }
+
+    /**
+     * Scramble the bits of a seed (the SplitMix64 finalizer).
+     *
+     * @param value
+     * @return long
+     */
+    public static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+
+        return value ^ (value >>> 31);
+    }
+}
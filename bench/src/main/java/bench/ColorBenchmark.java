@@ -0,0 +1,90 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.lang.invoke.MethodHandle;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+/**
+ * ColorBenchmark class.
+ *
+ * Coloring every cell of a grid through the palette lookup table, against
+ * the original per-pixel calculateColor and Colors.interpolateColor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx8g" })
+public class ColorBenchmark {
+
+    private static final MethodHandle STANDARD = Target.method("Palette", "standard", "Palette", "int", "int");
+
+    private static final MethodHandle GET_COLOR = Target.virtual("Palette", "getColor", "int", "int");
+
+    private static final MethodHandle GET_MIN = Target.virtual("ElevationGrid", "getMin", "int");
+
+    private static final MethodHandle GET_MAX = Target.virtual("ElevationGrid", "getMax", "int");
+
+    @Param({ "Colorado_844x480.dat", "Europe_1056x544.dat", "5000", "20000" })
+    public String dataset;
+
+    private int[][] matrix;
+
+    private int[] pixels;
+
+    private int min;
+
+    private int max;
+
+    private Object palette;
+
+    @Setup
+    public void setUp() throws Throwable {
+        int[] dimensions = Datasets.dimensions(dataset);
+        Object grid = Datasets.grid(dataset);
+
+        matrix = Datasets.matrix(grid, dimensions[0], dimensions[1]);
+        pixels = new int[dimensions[1]];
+        min = (int) GET_MIN.invokeExact(grid);
+        max = (int) GET_MAX.invokeExact(grid);
+        palette = (Object) STANDARD.invokeExact(min, max);
+    }
+
+    @Benchmark
+    public Object buildPalette() throws Throwable {
+        return (Object) STANDARD.invokeExact(min, max);
+    }
+
+    @Benchmark
+    public int[] palette() throws Throwable {
+        for (int[] row : matrix) {
+            for (int j = 0; j < row.length; j++) {
+                pixels[j] = (int) GET_COLOR.invokeExact(palette, row[j]);
+            }
+        }
+
+        return pixels;
+    }
+
+    @Benchmark
+    public int[] legacyCalculateColor() throws Throwable {
+        for (int[] row : matrix) {
+            for (int j = 0; j < row.length; j++) {
+                pixels[j] = Legacy.calculateColor(row[j], min, max).getRGB();
+            }
+        }
+
+        return pixels;
+    }
+}
@@ -0,0 +1,191 @@
+package bench;
+
+import java.io.File;
+import java.io.Writer;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.lang.invoke.MethodHandle;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Datasets class.
+ *
+ * Resolves the datasets the benchmarks run on. A dataset is either the name
+ * of one of the bundled files (for example "Colorado_844x480.dat") or a number
+ * N, for a synthetic N by N grid of smooth, hilly terrain generated from a
+ * fixed seed.
+ */
+public final class Datasets {
+
+    /**
+     * The directory holding the bundled datasets, overridable with
+     * -Delevation.data=<dir>.
+     */
+    private static final String DATA = System.getProperty("elevation.data");
+
+    private static final MethodHandle FILL = Target.method("Matrix", "fill", "ElevationGrid",
+            "java.lang.String", "int", "int");
+
+    private static final MethodHandle SHORT_GRID = Target.constructor("ShortGrid",
+            "int", "int", "int", "int", "short[]");
+
+    private static final MethodHandle COPY_ROW = Target.virtual("ElevationGrid", "copyRow", "int[]",
+            "int", "int[]");
+
+    /**
+     * Datasets class constructor.
+     */
+    private Datasets() {
+    }
+
+    /**
+     * Get the dimensions of a dataset as { rows, cols }.
+     *
+     * @param dataset
+     * @return int[]
+     */
+    public static int[] dimensions(String dataset) {
+        if (isSynthetic(dataset)) {
+            int size = Integer.parseInt(dataset);
+
+            return new int[] { size, size };
+        }
+
+        String[] parts = dataset.substring(dataset.lastIndexOf('_') + 1, dataset.lastIndexOf('.')).split("x");
+
+        return new int[] { Integer.parseInt(parts[1]), Integer.parseInt(parts[0]) };
+    }
+
+    /**
+     * Get the path of a text file holding a dataset, writing synthetic
+     * datasets out to a temporary file first.
+     *
+     * @param dataset
+     * @return String
+     * @throws IOException
+     */
+    public static String file(String dataset) throws IOException {
+        if (!isSynthetic(dataset)) {
+            return locate(dataset);
+        }
+
+        int[] dimensions = dimensions(dataset);
+        short[] values = terrain(dimensions[0], dimensions[1]);
+        Path file = Files.createTempFile("Synthetic_" + dimensions[1] + "x" + dimensions[0] + "_", ".dat");
+
+        file.toFile().deleteOnExit();
+
+        // Match the layout of the bundled files: right-aligned, one row per line.
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            for (int i = 0; i < dimensions[0]; i++) {
+                StringBuilder line = new StringBuilder(dimensions[1] * 7 + 1);
+
+                for (int j = 0; j < dimensions[1]; j++) {
+                    String value = Integer.toString(values[i * dimensions[1] + j]);
+
+                    line.append("       ", 0, Math.max(1, 7 - value.length())).append(value);
+                }
+
+                writer.write(line.append('\n').toString());
+            }
+        }
+
+        return file.toString();
+    }
+
+    /**
+     * Load a dataset as an elevation grid.
+     *
+     * @param dataset
+     * @return Object
+     * @throws Throwable
+     */
+    public static Object grid(String dataset) throws Throwable {
+        int[] dimensions = dimensions(dataset);
+
+        if (!isSynthetic(dataset)) {
+            return (Object) FILL.invokeExact(locate(dataset), dimensions[0], dimensions[1]);
+        }
+
+        short[] values = terrain(dimensions[0], dimensions[1]);
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+
+        for (short value : values) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        return (Object) SHORT_GRID.invokeExact(dimensions[0], dimensions[1], min, max, values);
+    }
+
+    /**
+     * Copy an elevation grid into an array of rows, for the legacy baselines.
+     *
+     * @param grid
+     * @param rows
+     * @param cols
+     * @return int[][]
+     * @throws Throwable
+     */
+    public static int[][] matrix(Object grid, int rows, int cols) throws Throwable {
+        int[][] matrix = new int[rows][];
+
+        for (int i = 0; i < rows; i++) {
+            matrix[i] = (int[]) COPY_ROW.invokeExact(grid, i, new int[cols]);
+        }
+
+        return matrix;
+    }
+
+    /**
+     * Generate synthetic terrain: a few overlapping ridges plus a little noise.
+     *
+     * @param rows
+     * @param cols
+     * @return short[]
+     */
+    private static short[] terrain(int rows, int cols) {
+        SplittableRandom random = new SplittableRandom(42);
+        short[] values = new short[rows * cols];
+
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                double ridges = 1200 * Math.sin(i * 0.013) * Math.cos(j * 0.021) + 400 * Math.sin((i + j) * 0.05);
+
+                values[i * cols + j] = (short) (2000 + ridges + random.nextInt(-40, 41));
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Check whether a dataset is synthetic.
+     *
+     * @param dataset
+     * @return boolean
+     */
+    private static boolean isSynthetic(String dataset) {
+        return dataset.chars().allMatch(Character::isDigit);
+    }
+
+    /**
+     * Find a bundled dataset in the data directory, the working directory or
+     * its parent.
+     *
+     * @param dataset
+     * @return String
+     */
+    private static String locate(String dataset) {
+        for (String directory : new String[] { DATA, ".", ".." }) {
+            if (directory != null && new File(directory, dataset).isFile()) {
+                return new File(directory, dataset).getPath();
+            }
+        }
+
+        throw new IllegalArgumentException("Dataset not found: " + dataset + " (set -Delevation.data=<dir>)");
+    }
+}
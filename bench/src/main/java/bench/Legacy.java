@@ -0,0 +1,247 @@
+package bench;
+
+import java.io.File;
+import java.awt.Color;
+import java.util.Random;
+import java.util.Scanner;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+
+/**
+ * Legacy class.
+ *
+ * The original int[][] implementations of loading, extreme-finding, coloring
+ * and pathing, kept as baselines for the benchmarks. They call into the same
+ * application helpers (Extreme.find, Matrix.findMinOfArray and
+ * Colors.interpolateColor) that the originals did.
+ */
+public final class Legacy {
+
+    private static final MethodHandle EXTREME_FIND = Target.method("Extreme", "find", "int",
+            "int", "int", "ExtremeMode");
+
+    private static final MethodHandle FIND_MIN_OF_ARRAY = Target.method("Matrix", "findMinOfArray", "int",
+            "int[]");
+
+    private static final MethodHandle INTERPOLATE = Target.method("Colors", "interpolateColor",
+            "java.awt.Color", "java.awt.Color", "java.awt.Color", "float");
+
+    private static final Object MIN = Target.field("ExtremeMode", "MIN", "ExtremeMode");
+
+    private static final Object MAX = Target.field("ExtremeMode", "MAX", "ExtremeMode");
+
+    private static final Color LOW = (Color) Target.field("Colors", "lowElevation", "java.awt.Color");
+
+    private static final Color MID = (Color) Target.field("Colors", "midElevation", "java.awt.Color");
+
+    private static final Color HIGH = (Color) Target.field("Colors", "highElevation", "java.awt.Color");
+
+    /**
+     * Legacy class constructor.
+     */
+    private Legacy() {
+    }
+
+    /**
+     * Fill a matrix from a text file with a Scanner.
+     *
+     * @param fileName
+     * @param matrix
+     * @return int[][]
+     * @throws IOException
+     */
+    public static int[][] fill(String fileName, int[][] matrix) throws IOException {
+        try (Scanner file = new Scanner(new File(fileName))) {
+            for (int i = 0; i < matrix.length; i++) {
+                for (int j = 0; j < matrix[i].length; j++) {
+                    matrix[i][j] = file.hasNextInt() ? file.nextInt() : 0;
+                }
+            }
+        }
+
+        return matrix;
+    }
+
+    /**
+     * Find the extreme value in a matrix, one Extreme.find call per cell.
+     *
+     * @param matrix
+     * @param max
+     * @return int
+     * @throws Throwable
+     */
+    public static int findExtreme(int[][] matrix, boolean max) throws Throwable {
+        Object mode = max ? MAX : MIN;
+        int extreme = matrix[0][0];
+
+        for (int i = 0; i < matrix.length; i++) {
+            extreme = (int) EXTREME_FIND.invokeExact(findExtremeOfArray(matrix[i], mode), extreme, mode);
+        }
+
+        return extreme;
+    }
+
+    /**
+     * Find the compound index of the extreme value in a matrix, rescanning a row
+     * whenever it holds a new extreme.
+     *
+     * @param matrix
+     * @param max
+     * @return int[]
+     * @throws Throwable
+     */
+    public static int[] findExtremeIndex(int[][] matrix, boolean max) throws Throwable {
+        Object mode = max ? MAX : MIN;
+        int extremeRow = 0;
+        int extremeCol = 0;
+        int extremeValue = matrix[0][0];
+
+        for (int i = 0; i < matrix.length; i++) {
+            int newExtreme = (int) EXTREME_FIND.invokeExact(findExtremeOfArray(matrix[i], mode), extremeValue, mode);
+
+            if (newExtreme != extremeValue) {
+                extremeRow = i;
+                extremeCol = findExtremeIndexOfArray(matrix[i], mode);
+            }
+
+            extremeValue = newExtreme;
+        }
+
+        return new int[] { extremeRow, extremeCol };
+    }
+
+    /**
+     * Calculate the color of a value by interpolating between the elevation
+     * colors, allocating a Color per call.
+     *
+     * @param value
+     * @param min
+     * @param max
+     * @return Color
+     * @throws Throwable
+     */
+    public static Color calculateColor(int value, int min, int max) throws Throwable {
+        float half = 0.5f;
+        int range = max - min;
+        float ratio = ((float) value - min) / range;
+
+        if (ratio >= half) {
+            return (Color) INTERPOLATE.invokeExact(MID, HIGH, (ratio - half) * 2);
+        }
+
+        return (Color) INTERPOLATE.invokeExact(LOW, MID, ratio * 2);
+    }
+
+    /**
+     * Walk a path from a given row, allocating two arrays per step.
+     *
+     * @param matrix
+     * @param row
+     * @param disableMiddlePriority
+     * @param rand
+     * @return int
+     * @throws Throwable
+     */
+    public static int walk(int[][] matrix, int row, boolean disableMiddlePriority, Random rand) throws Throwable {
+        int change = 0;
+
+        for (int i = 0; i < matrix[0].length - 1; i++) {
+            int[] next = findNextPosition(matrix, row, i, disableMiddlePriority, rand);
+
+            row += next[0];
+            change += next[1];
+        }
+
+        return change;
+    }
+
+    /**
+     * Find the position of the next "best" step in a path.
+     *
+     * @param matrix
+     * @param row
+     * @param col
+     * @param disableMiddlePriority
+     * @param rand
+     * @return int[]
+     * @throws Throwable
+     */
+    private static int[] findNextPosition(int[][] matrix, int row, int col, boolean disableMiddlePriority,
+            Random rand) throws Throwable {
+        int rows = matrix.length;
+        int current = matrix[row][col];
+
+        col++;
+
+        int fwdChange = Math.abs(current - matrix[row][col]);
+        int upChange = row > 0 ? Math.abs(current - matrix[row - 1][col]) : fwdChange;
+        int downChange = row < rows - 1 ? Math.abs(current - matrix[row + 1][col]) : fwdChange;
+
+        int min = (int) FIND_MIN_OF_ARRAY.invokeExact(new int[] { upChange, fwdChange, downChange });
+
+        if (disableMiddlePriority && min == fwdChange && min == upChange) {
+            return rand.nextInt(2) == 0 || row == 0 ? new int[] { 0, fwdChange } : new int[] { -1, upChange };
+        }
+
+        if (disableMiddlePriority && min == fwdChange && min == downChange) {
+            return rand.nextInt(2) == 0 || row == rows - 1 ? new int[] { 0, fwdChange } : new int[] { 1, downChange };
+        }
+
+        if (min == fwdChange) {
+            return new int[] { 0, fwdChange };
+        }
+
+        if (min == upChange && min == downChange) {
+            return rand.nextInt(2) == 0 ? new int[] { -1, upChange } : new int[] { 1, downChange };
+        }
+
+        if (min == upChange) {
+            return new int[] { -1, upChange };
+        }
+
+        return new int[] { 1, downChange };
+    }
+
+    /**
+     * Find the extreme value in an array.
+     *
+     * @param array
+     * @param mode
+     * @return int
+     * @throws Throwable
+     */
+    private static int findExtremeOfArray(int[] array, Object mode) throws Throwable {
+        int extreme = array[0];
+
+        for (int i = 0; i < array.length; i++) {
+            extreme = (int) EXTREME_FIND.invokeExact(array[i], extreme, mode);
+        }
+
+        return extreme;
+    }
+
+    /**
+     * Find the index of the extreme value in an array.
+     *
+     * @param array
+     * @param mode
+     * @return int
+     * @throws Throwable
+     */
+    private static int findExtremeIndexOfArray(int[] array, Object mode) throws Throwable {
+        int extremeIndex = 0;
+        int extremeValue = array[extremeIndex];
+
+        for (int i = 0; i < array.length; i++) {
+            int newExtreme = (int) EXTREME_FIND.invokeExact(array[i], extremeValue, mode);
+
+            if (newExtreme != extremeValue) {
+                extremeIndex = i;
+            }
+
+            extremeValue = newExtreme;
+        }
+
+        return extremeIndex;
+    }
+}
@@ -0,0 +1,61 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.lang.invoke.MethodHandle;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+/**
+ * LoadBenchmark class.
+ *
+ * Parsing a text dataset into a grid with Matrix.fill, against the original
+ * Scanner-based loader.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx8g" })
+public class LoadBenchmark {
+
+    private static final MethodHandle FILL = Target.method("Matrix", "fill", "ElevationGrid",
+            "java.lang.String", "int", "int");
+
+    @Param({ "Colorado_844x480.dat", "Europe_1056x544.dat", "5000", "20000" })
+    public String dataset;
+
+    private String file;
+
+    private int rows;
+
+    private int cols;
+
+    @Setup
+    public void setUp() throws Exception {
+        int[] dimensions = Datasets.dimensions(dataset);
+
+        rows = dimensions[0];
+        cols = dimensions[1];
+        file = Datasets.file(dataset);
+    }
+
+    @Benchmark
+    public Object fill() throws Throwable {
+        return (Object) FILL.invokeExact(file, rows, cols);
+    }
+
+    @Benchmark
+    public int[][] legacyFill() throws Exception {
+        return Legacy.fill(file, new int[rows][cols]);
+    }
+}
@@ -0,0 +1,107 @@
+package bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.lang.invoke.MethodHandle;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+/**
+ * PathBenchmark class.
+ *
+ * The full greedy path sweep (one walk from every row) with each walker,
+ * against the original walker that allocated two arrays per step.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx8g", "--add-modules", "jdk.incubator.vector" })
+public class PathBenchmark {
+
+    private static final MethodHandle WALK_ALL = Target.virtual("Walker", "walkAll", "int[]");
+
+    private static final MethodHandle PATH_STORE = Target.constructor("PathStore", "Walker");
+
+    private static final MethodHandle SET_PARALLELISM = Target.method("Parallel", "setParallelism", "void",
+            "int");
+
+    @Param({ "Colorado_844x480.dat", "Europe_1056x544.dat", "5000", "20000" })
+    public String dataset;
+
+    @Param({ "false", "true" })
+    public boolean disableMiddlePriority;
+
+    /**
+     * The walker class to run.
+     */
+    @Param({ "Walker", "VectorWalker" })
+    public String engine;
+
+    /**
+     * The number of worker threads, or 0 for one per core.
+     */
+    @Param({ "1", "0" })
+    public int threads;
+
+    private MethodHandle walker;
+
+    private Object grid;
+
+    private int[][] matrix;
+
+    private Random rand = new Random(42);
+
+    @Setup
+    public void setUp() throws Throwable {
+        int[] dimensions = Datasets.dimensions(dataset);
+        grid = Datasets.grid(dataset);
+
+        SET_PARALLELISM.invokeExact(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+
+        walker = Target.constructor(engine, "ElevationGrid", "boolean", "long");
+        matrix = Datasets.matrix(grid, dimensions[0], dimensions[1]);
+    }
+
+    @Benchmark
+    public int[] sweep() throws Throwable {
+        return (int[]) WALK_ALL.invokeExact(create());
+    }
+
+    @Benchmark
+    public Object pathStore() throws Throwable {
+        return (Object) PATH_STORE.invokeExact(create());
+    }
+
+    @Benchmark
+    public int[] legacySweep() throws Throwable {
+        int[] totals = new int[matrix.length];
+
+        for (int i = 0; i < matrix.length; i++) {
+            totals[i] = Legacy.walk(matrix, i, disableMiddlePriority, rand);
+        }
+
+        return totals;
+    }
+
+    /**
+     * A fresh walker for every sweep, so that no walker starts with a record
+     * left over from the last one.
+     *
+     * @return Object
+     * @throws Throwable
+     */
+    private Object create() throws Throwable {
+        return (Object) walker.invokeExact(grid, disableMiddlePriority, 42L);
+    }
+}
@@ -0,0 +1,73 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.lang.invoke.MethodHandle;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * StatisticsBenchmark class.
+ *
+ * The fused statistics kernel behind the Matrix.find* reductions, against the
+ * four separate scans (max, min and both of their indices) it replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx8g" })
+public class StatisticsBenchmark {
+
+    private static final MethodHandle STATISTICS = Target.method("Statistics", "of", "Statistics",
+            "ElevationGrid");
+
+    private static final MethodHandle SET_PARALLELISM = Target.method("Parallel", "setParallelism", "void",
+            "int");
+
+    @Param({ "Colorado_844x480.dat", "Europe_1056x544.dat", "5000", "20000" })
+    public String dataset;
+
+    /**
+     * The number of worker threads, or 0 for one per core.
+     */
+    @Param({ "1", "0" })
+    public int threads;
+
+    private Object grid;
+
+    private int[][] matrix;
+
+    @Setup
+    public void setUp() throws Throwable {
+        int[] dimensions = Datasets.dimensions(dataset);
+
+        SET_PARALLELISM.invokeExact(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+
+        grid = Datasets.grid(dataset);
+        matrix = Datasets.matrix(grid, dimensions[0], dimensions[1]);
+    }
+
+    @Benchmark
+    public Object statistics() throws Throwable {
+        return (Object) STATISTICS.invokeExact(grid);
+    }
+
+    @Benchmark
+    public void legacyFindExtremes(Blackhole blackhole) throws Throwable {
+        blackhole.consume(Legacy.findExtreme(matrix, true));
+        blackhole.consume(Legacy.findExtreme(matrix, false));
+        blackhole.consume(Legacy.findExtremeIndex(matrix, true));
+        blackhole.consume(Legacy.findExtremeIndex(matrix, false));
+    }
+}
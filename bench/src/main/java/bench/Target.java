@@ -0,0 +1,168 @@
+package bench;
+
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+
+/**
+ * Target class.
+ *
+ * The application lives in the unnamed package, which code in a named package
+ * (as JMH requires benchmarks to be) cannot refer to directly. This resolves
+ * method handles to the application's classes at startup instead, with any
+ * application types in their signatures erased to Object. Held in static final
+ * fields, the handles are constants to the JIT and are inlined like direct
+ * calls.
+ */
+public final class Target {
+
+    /**
+     * The lookup used to resolve application members.
+     */
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    /**
+     * Target class constructor.
+     */
+    private Target() {
+    }
+
+    /**
+     * Resolve a static method.
+     *
+     * @param owner
+     * @param name
+     * @param returns
+     * @param params
+     * @return MethodHandle
+     */
+    public static MethodHandle method(String owner, String name, String returns, String... params) {
+        try {
+            MethodType type = MethodType.methodType(type(returns), types(params));
+
+            return erase(LOOKUP.findStatic(type(owner), name, type));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to resolve " + owner + "." + name, e);
+        }
+    }
+
+    /**
+     * Resolve an instance method, taking the receiver as its first argument.
+     *
+     * @param owner
+     * @param name
+     * @param returns
+     * @param params
+     * @return MethodHandle
+     */
+    public static MethodHandle virtual(String owner, String name, String returns, String... params) {
+        try {
+            MethodType type = MethodType.methodType(type(returns), types(params));
+
+            return erase(LOOKUP.findVirtual(type(owner), name, type));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to resolve " + owner + "." + name, e);
+        }
+    }
+
+    /**
+     * Resolve a constructor.
+     *
+     * @param owner
+     * @param params
+     * @return MethodHandle
+     */
+    public static MethodHandle constructor(String owner, String... params) {
+        try {
+            MethodType type = MethodType.methodType(void.class, types(params));
+
+            return erase(LOOKUP.findConstructor(type(owner), type));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to resolve new " + owner, e);
+        }
+    }
+
+    /**
+     * Read a static field.
+     *
+     * @param owner
+     * @param name
+     * @param type
+     * @return Object
+     */
+    public static Object field(String owner, String name, String type) {
+        try {
+            return LOOKUP.findStaticGetter(type(owner), name, type(type)).invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Unable to read " + owner + "." + name, e);
+        }
+    }
+
+    /**
+     * Erase the application types in the signature of a handle to Object.
+     *
+     * @param handle
+     * @return MethodHandle
+     */
+    private static MethodHandle erase(MethodHandle handle) {
+        MethodType type = handle.type();
+
+        for (int i = 0; i < type.parameterCount(); i++) {
+            if (isApplication(type.parameterType(i))) {
+                type = type.changeParameterType(i, Object.class);
+            }
+        }
+
+        if (isApplication(type.returnType())) {
+            type = type.changeReturnType(Object.class);
+        }
+
+        return handle.asType(type);
+    }
+
+    /**
+     * Check whether a type belongs to the application.
+     *
+     * @param type
+     * @return boolean
+     */
+    private static boolean isApplication(Class<?> type) {
+        return !type.isPrimitive() && !type.isArray() && type.getPackageName().isEmpty();
+    }
+
+    /**
+     * Resolve a list of type names.
+     *
+     * @param names
+     * @return Class<?>[]
+     */
+    private static Class<?>[] types(String... names) throws ClassNotFoundException {
+        Class<?>[] types = new Class<?>[names.length];
+
+        for (int i = 0; i < names.length; i++) {
+            types[i] = type(names[i]);
+        }
+
+        return types;
+    }
+
+    /**
+     * Resolve a type name, which may be a primitive or an array of one.
+     *
+     * @param name
+     * @return Class<?>
+     */
+    private static Class<?> type(String name) throws ClassNotFoundException {
+        switch (name) {
+            case "void": return void.class;
+            case "boolean": return boolean.class;
+            case "int": return int.class;
+            case "long": return long.class;
+            case "float": return float.class;
+            case "byte[]": return byte[].class;
+            case "short[]": return short[].class;
+            case "int[]": return int[].class;
+            default: return Class.forName(name);
+        }
+    }
+}